@@ -0,0 +1,695 @@
+package edu.nyu.cs.cs101.consumers;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * The same game as <code>World</code>, but stored as a set of parallel arrays
+ * of numbers instead of a list of ball objects. Ball <code>i</code> is at
+ * <code>(x[i], y[i])</code>, moves by <code>(xSpeed[i], ySpeed[i])</code> every
+ * step, and so on.
+ *
+ * Every part of a step (walls, collisions, steering, moving) is a plain loop
+ * over these arrays, and steering has one loop per kind of ball, so there are
+ * no <code>instanceof</code> checks and no pointer chasing. This makes it
+ * practical to run worlds with millions of balls. An ArrayWorld follows
+ * exactly the same rules as a <code>World</code> and gives the same results
+ * as one with sleeping switched off (see <code>World.setSleeping()</code>).
+ *
+ * A world can be saved to a snapshot file and loaded back later with
+ * <code>save()</code> and <code>load()</code>. The file is laid out the same
+ * way as the arrays, little endian:
+ *
+ * <pre>
+ * header    magic, version, width, height (ints), timestep (double),
+ *           count, user index, next id, steering cursor (ints)
+ * x, y, prevX, prevY, xSpeed, ySpeed, maxSpeed, radius
+ *           count doubles each
+ * color, id, thinkIn, target
+ *           count ints each
+ * type, flags
+ *           count bytes each
+ * </pre>
+ *
+ * Each column is copied straight between the file (mapped into memory) and
+ * its array, so millions of balls load in a fraction of a second. Version 1
+ * files (without the next id, the steering cursor, ids, thinkIn, target and
+ * flags) can still be loaded: the balls are numbered in order and only the
+ * user's ball is a player.
+ *
+ * The ids, player flags and steering state (<code>thinkIn</code>,
+ * <code>target</code> and the cursor; see
+ * <code>World.setSteeringBudget()</code>) are only carried along, so that a
+ * <code>World</code> saved and loaded again carries on exactly as before; an
+ * ArrayWorld doesn't limit steering itself. Which balls are asleep (see
+ * <code>World.setSleeping()</code>) isn't saved: <code>World.save()</code>
+ * wakes every ball first, and a loaded world starts with every ball awake,
+ * so both carry on the same way.
+ *
+ * @author Katie Kroik
+ */
+public class ArrayWorld {
+    // Arrays start this big and double when they run out of room
+    private static final int INITIAL_CAPACITY = 64;
+
+    private static final byte BOUNCY = (byte) BallType.BOUNCY.ordinal();
+
+    // Written at the start of every snapshot
+    private static final int SNAPSHOT_MAGIC = 0x534e4150;
+    private static final int SNAPSHOT_VERSION = 2;
+    private static final int SNAPSHOT_HEADER_SIZE = 40;
+    // Bytes per ball: 8 doubles, 4 ints and 2 bytes
+    private static final int SNAPSHOT_BALL_SIZE = 8 * 8 + 4 * 4 + 2;
+    // The same for version 1: 8 doubles, an int and a byte
+    private static final int SNAPSHOT_V1_HEADER_SIZE = 32;
+    private static final int SNAPSHOT_V1_BALL_SIZE = 8 * 8 + 4 + 1;
+
+    // Bits in flags
+    static final byte PLAYER = 1;
+
+    // Size of the world
+    private final int width;
+    private final int height;
+
+    // Maximum x value for BouncyBall
+    private final double maxBouncyX;
+
+    // One entry per ball
+    private int count = 0;
+    double[] x = new double[INITIAL_CAPACITY];
+    double[] y = new double[INITIAL_CAPACITY];
+    // Where each ball was before its last move
+    double[] prevX = new double[INITIAL_CAPACITY];
+    double[] prevY = new double[INITIAL_CAPACITY];
+    double[] xSpeed = new double[INITIAL_CAPACITY];
+    double[] ySpeed = new double[INITIAL_CAPACITY];
+    double[] maxSpeed = new double[INITIAL_CAPACITY];
+    double[] radius = new double[INITIAL_CAPACITY];
+    // Color packed as 0xRRGGBB
+    int[] color = new int[INITIAL_CAPACITY];
+    // BallType ordinal
+    byte[] type = new byte[INITIAL_CAPACITY];
+    // Id of each ball (see GeometricObject.id)
+    int[] id = new int[INITIAL_CAPACITY];
+    // PLAYER if a player steers the ball
+    byte[] flags = new byte[INITIAL_CAPACITY];
+    // Steps until a ball far from every player may look for its closest
+    // object again, and the id of what it steered relative to last (-1 for
+    // nothing), for World to carry on with
+    int[] thinkIn = new int[INITIAL_CAPACITY];
+    int[] target = new int[INITIAL_CAPACITY];
+    // Id to give the next ball made
+    private int nextId = 0;
+    // Where the far balls' turns to look got to in World
+    private int steeringCursor = 0;
+
+    // Index of the user controlled ball, or -1 if it has been consumed
+    private int userIndex = -1;
+
+    // How far everything moves in one step, in multiples of its speed
+    private double timestep = 1;
+    // Radius of each ball plus how far it went in its last move
+    private double[] reach = new double[INITIAL_CAPACITY];
+
+    // Broadphase for collisions
+    private final CollisionGrid collisionGrid = new CollisionGrid();
+    private final CollisionGrid.Candidates candidates = new CollisionGrid.Candidates();
+    // Pairs of balls that touched during this step
+    private final ContactBuffer contacts = new ContactBuffer();
+    // Nearest neighbour index for steering
+    private final SpatialHash grid = new SpatialHash();
+
+    /**
+     * Creates an empty world.
+     *
+     * @param width of the world
+     * @param height of the world
+     */
+    public ArrayWorld(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.maxBouncyX = width / 2;
+    }
+
+    /**
+     * Creates a world holding the same balls as <code>world</code>.
+     *
+     * @param world to copy
+     */
+    public ArrayWorld(World world) {
+        this(world.getWidth(), world.getHeight());
+        timestep = world.getTimestep();
+        ArrayList<GeometricObject> objects = world.getObjects();
+        for (int i = 0; i < objects.size(); i++) {
+            GeometricObject object = objects.get(i);
+            if (!(object instanceof ExpandableBall)) {
+                continue;
+            }
+            ExpandableBall ball = (ExpandableBall) object;
+            int index = add(ball);
+            if (object == world.getUserBall()) {
+                userIndex = index;
+            }
+            thinkIn[index] = (int) Math.max(0, Math.min(Integer.MAX_VALUE, ball.nextThink - world.getSteps()));
+            GeometricObject held = ball.getTarget();
+            target[index] = (held == null) ? -1 : held.id;
+        }
+        nextId = Math.max(nextId, world.getNextId());
+        steeringCursor = world.getSteeringCursor();
+    }
+
+    /**
+     * Adds a copy of a ball to the end of the arrays.
+     *
+     * @param ball to add
+     * @return the index of the new ball
+     */
+    public int add(ExpandableBall ball) {
+        int i = add(BallType.of(ball), ball.xPos, ball.yPos, ball.xSpeed, ball.ySpeed, ball.radius);
+        prevX[i] = ball.prevXPos;
+        prevY[i] = ball.prevYPos;
+        maxSpeed[i] = ball.maxSpeed;
+        color[i] = (ball.getRed() << 16) | (ball.getGreen() << 8) | ball.getBlue();
+        id[i] = ball.id;
+        nextId = Math.max(nextId, ball.id + 1);
+        flags[i] = ball.player ? PLAYER : 0;
+        return i;
+    }
+
+    /**
+     * Adds a ball to the end of the arrays. It gets the usual color and
+     * maximum speed for its type.
+     *
+     * @return the index of the new ball
+     */
+    public int add(BallType ballType, double xPos, double yPos, double xSpeed, double ySpeed, double radius) {
+        if (count == x.length) {
+            ensureCapacity(count * 2);
+        }
+        int i = count++;
+        x[i] = xPos;
+        y[i] = yPos;
+        prevX[i] = xPos;
+        prevY[i] = yPos;
+        this.xSpeed[i] = xSpeed;
+        this.ySpeed[i] = ySpeed;
+        this.radius[i] = radius;
+        maxSpeed[i] = World.STARTING_MAX_SPEED;
+        type[i] = (byte) ballType.ordinal();
+        color[i] = colorOf(ballType);
+        id[i] = nextId++;
+        flags[i] = 0;
+        thinkIn[i] = 0;
+        target[i] = -1;
+        return i;
+    }
+
+    private static int colorOf(BallType ballType) {
+        switch (ballType) {
+        case EVADING:
+            return 0x00ff32;
+        case CONSUMING:
+            return 0xff0000;
+        case INTELLIGENT:
+            return 0x0000ff;
+        case MASTER:
+            return 0xc86600;
+        case BOUNCY:
+            return 0xffff00;
+        default:
+            return 0xaf00ff;
+        }
+    }
+
+    /**
+     * Makes sure the arrays can hold at least <code>capacity</code> balls.
+     *
+     * @param capacity number of balls
+     */
+    public void ensureCapacity(int capacity) {
+        if (capacity <= x.length) {
+            return;
+        }
+        x = Arrays.copyOf(x, capacity);
+        y = Arrays.copyOf(y, capacity);
+        prevX = Arrays.copyOf(prevX, capacity);
+        prevY = Arrays.copyOf(prevY, capacity);
+        reach = new double[capacity];
+        xSpeed = Arrays.copyOf(xSpeed, capacity);
+        ySpeed = Arrays.copyOf(ySpeed, capacity);
+        maxSpeed = Arrays.copyOf(maxSpeed, capacity);
+        radius = Arrays.copyOf(radius, capacity);
+        color = Arrays.copyOf(color, capacity);
+        type = Arrays.copyOf(type, capacity);
+        id = Arrays.copyOf(id, capacity);
+        flags = Arrays.copyOf(flags, capacity);
+        thinkIn = Arrays.copyOf(thinkIn, capacity);
+        target = Arrays.copyOf(target, capacity);
+    }
+
+    /**
+     * @return number of balls in the world
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * @return index of the user controlled ball, or -1 if it has been consumed
+     */
+    public int getUserIndex() {
+        return userIndex;
+    }
+
+    /**
+     * @param userIndex index of the user controlled ball, or -1 for none
+     */
+    void setUserIndex(int userIndex) {
+        this.userIndex = userIndex;
+    }
+
+    /**
+     * @return id to give the next ball made
+     */
+    int getNextId() {
+        return nextId;
+    }
+
+    /**
+     * @return where the far balls' turns to look got to (see
+     *         <code>World.planSteering()</code>)
+     */
+    int getSteeringCursor() {
+        return steeringCursor;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Same as <code>World.setTimestep()</code>.
+     *
+     * @param timestep how far each ball moves per step, in multiples of its
+     *        speed (1 is normal)
+     */
+    public void setTimestep(double timestep) {
+        if (!(timestep > 0)) {
+            throw new IllegalArgumentException("timestep must be more than 0");
+        }
+        this.timestep = timestep;
+    }
+
+    public double getTimestep() {
+        return timestep;
+    }
+
+    /**
+     * Turns the arrays back into ball objects, for example to draw them.
+     * Each ball keeps its id, whether a player steers it and what it steers
+     * relative to, with the steps counted from now.
+     *
+     * @return a new ball object for every ball in the world
+     */
+    public ArrayList<GeometricObject> toObjects() {
+        ArrayList<GeometricObject> objects = new ArrayList<GeometricObject>(count);
+        HashMap<Integer, GeometricObject> byId = new HashMap<Integer, GeometricObject>();
+        for (int i = 0; i < count; i++) {
+            ExpandableBall ball = BallType.get(type[i]).create(0, 0);
+            ball.setPos(x[i], y[i]);
+            ball.prevXPos = prevX[i];
+            ball.prevYPos = prevY[i];
+            ball.setSpeed(xSpeed[i], ySpeed[i]);
+            ball.radius = radius[i];
+            ball.maxSpeed = maxSpeed[i];
+            ball.setColor((color[i] >> 16) & 0xff, (color[i] >> 8) & 0xff, color[i] & 0xff);
+            ball.id = id[i];
+            ball.player = (flags[i] & PLAYER) != 0;
+            objects.add(ball);
+            byId.put(id[i], ball);
+        }
+        for (int i = 0; i < count; i++) {
+            ((ExpandableBall) objects.get(i)).hold((target[i] < 0) ? null : byId.get(target[i]), thinkIn[i]);
+        }
+        return objects;
+    }
+
+    /**
+     * Writes every ball to a snapshot file, replacing anything already there.
+     *
+     * @param fileName to write to
+     * @throws IOException if the file can't be written
+     */
+    public void save(String fileName) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(fileName, "rw");
+        try {
+            file.setLength(SNAPSHOT_HEADER_SIZE + (long) count * SNAPSHOT_BALL_SIZE);
+            FileChannel channel = file.getChannel();
+            ByteBuffer header = map(channel, FileChannel.MapMode.READ_WRITE, 0, SNAPSHOT_HEADER_SIZE);
+            header.putInt(SNAPSHOT_MAGIC);
+            header.putInt(SNAPSHOT_VERSION);
+            header.putInt(width);
+            header.putInt(height);
+            header.putDouble(timestep);
+            header.putInt(count);
+            header.putInt(userIndex);
+            header.putInt(nextId);
+            header.putInt(steeringCursor);
+
+            long offset = SNAPSHOT_HEADER_SIZE;
+            double[][] columns = { x, y, prevX, prevY, xSpeed, ySpeed, maxSpeed, radius };
+            for (double[] column : columns) {
+                map(channel, FileChannel.MapMode.READ_WRITE, offset, count * 8L).asDoubleBuffer().put(column, 0,
+                        count);
+                offset += count * 8L;
+            }
+            int[][] intColumns = { color, id, thinkIn, target };
+            for (int[] column : intColumns) {
+                map(channel, FileChannel.MapMode.READ_WRITE, offset, count * 4L).asIntBuffer().put(column, 0, count);
+                offset += count * 4L;
+            }
+            map(channel, FileChannel.MapMode.READ_WRITE, offset, count).put(type, 0, count);
+            offset += count;
+            map(channel, FileChannel.MapMode.READ_WRITE, offset, count).put(flags, 0, count);
+        } finally {
+            file.close();
+        }
+    }
+
+    /**
+     * Reads a world written by <code>save()</code>.
+     *
+     * @param fileName to read from
+     * @return the world
+     * @throws IOException if the file can't be read or isn't a snapshot
+     */
+    public static ArrayWorld load(String fileName) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(fileName, "r");
+        try {
+            FileChannel channel = file.getChannel();
+            if (channel.size() < SNAPSHOT_V1_HEADER_SIZE) {
+                throw new IOException(fileName + " is not a snapshot");
+            }
+            ByteBuffer header = map(channel, FileChannel.MapMode.READ_ONLY, 0, SNAPSHOT_V1_HEADER_SIZE);
+            if (header.getInt() != SNAPSHOT_MAGIC) {
+                throw new IOException(fileName + " is not a snapshot");
+            }
+            int version = header.getInt();
+            if ((version < 1) || (version > SNAPSHOT_VERSION)) {
+                throw new IOException(fileName + " has unknown version " + version);
+            }
+            int headerSize = (version == 1) ? SNAPSHOT_V1_HEADER_SIZE : SNAPSHOT_HEADER_SIZE;
+            int ballSize = (version == 1) ? SNAPSHOT_V1_BALL_SIZE : SNAPSHOT_BALL_SIZE;
+            if (channel.size() < headerSize) {
+                throw new IOException(fileName + " is damaged");
+            }
+            header = map(channel, FileChannel.MapMode.READ_ONLY, 0, headerSize);
+            header.position(8);
+            int width = header.getInt();
+            int height = header.getInt();
+            double timestep = header.getDouble();
+            int count = header.getInt();
+            int userIndex = header.getInt();
+            // Version 1 numbered the balls in order
+            int nextId = (version == 1) ? count : header.getInt();
+            int steeringCursor = (version == 1) ? 0 : header.getInt();
+            if ((width <= 0) || (height <= 0) || !(timestep > 0) || (count < 0) || (userIndex < -1)
+                    || (userIndex >= count) || (nextId < 0) || (steeringCursor < 0)
+                    || (channel.size() != headerSize + (long) count * ballSize)) {
+                throw new IOException(fileName + " is damaged");
+            }
+
+            ArrayWorld world = new ArrayWorld(width, height);
+            world.timestep = timestep;
+            world.ensureCapacity(count);
+            long offset = headerSize;
+            double[][] columns = { world.x, world.y, world.prevX, world.prevY, world.xSpeed, world.ySpeed,
+                    world.maxSpeed, world.radius };
+            for (double[] column : columns) {
+                map(channel, FileChannel.MapMode.READ_ONLY, offset, count * 8L).asDoubleBuffer().get(column, 0,
+                        count);
+                offset += count * 8L;
+            }
+            int[][] intColumns = (version == 1) ? new int[][] { world.color }
+                    : new int[][] { world.color, world.id, world.thinkIn, world.target };
+            for (int[] column : intColumns) {
+                map(channel, FileChannel.MapMode.READ_ONLY, offset, count * 4L).asIntBuffer().get(column, 0, count);
+                offset += count * 4L;
+            }
+            map(channel, FileChannel.MapMode.READ_ONLY, offset, count).get(world.type, 0, count);
+            offset += count;
+            if (version == 1) {
+                for (int i = 0; i < count; i++) {
+                    world.id[i] = i;
+                    world.target[i] = -1;
+                }
+                if (userIndex >= 0) {
+                    world.flags[userIndex] = PLAYER;
+                }
+            } else {
+                map(channel, FileChannel.MapMode.READ_ONLY, offset, count).get(world.flags, 0, count);
+            }
+            int types = BallType.values().length;
+            for (int i = 0; i < count; i++) {
+                if ((world.type[i] < 0) || (world.type[i] >= types) || (world.id[i] < 0) || (world.id[i] >= nextId)
+                        || (world.thinkIn[i] < 0) || (world.target[i] < -1) || (world.target[i] >= nextId)) {
+                    throw new IOException(fileName + " is damaged");
+                }
+            }
+            world.count = count;
+            world.userIndex = userIndex;
+            world.nextId = nextId;
+            world.steeringCursor = steeringCursor;
+            return world;
+        } finally {
+            file.close();
+        }
+    }
+
+    private static ByteBuffer map(FileChannel channel, FileChannel.MapMode mode, long offset, long size)
+            throws IOException {
+        return channel.map(mode, offset, size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Advances the world by one step.
+     */
+    public void step() {
+        checkForWallCollisions();
+        checkForObjectCollisions();
+        removeConsumed();
+        steer();
+        move();
+    }
+
+    /**
+     * Bounces balls off the walls (and BouncyBalls off the middle).
+     */
+    void checkForWallCollisions() {
+        for (int i = 0; i < count; i++) {
+            bounceOffWalls(i);
+        }
+    }
+
+    private void bounceOffWalls(int i) {
+        if ((type[i] == BOUNCY) && (x[i] > maxBouncyX) && (xSpeed[i] > 0)) {
+            xSpeed[i] = -xSpeed[i];
+        }
+        if (((y[i] < 0) && (ySpeed[i] < 0)) || ((y[i] > height) && (ySpeed[i] > 0))) {
+            ySpeed[i] = -ySpeed[i];
+        }
+        if (((x[i] < 0) && (xSpeed[i] < 0)) || ((x[i] > width) && (xSpeed[i] > 0))) {
+            xSpeed[i] = -xSpeed[i];
+        }
+    }
+
+    /**
+     * Finds every pair of balls that touched, then grows and shrinks them, in
+     * the same order as <code>World</code> does.
+     */
+    void checkForObjectCollisions() {
+        for (int i = 0; i < count; i++) {
+            reach[i] = radius[i] + travel(i);
+        }
+        collisionGrid.build(x, y, reach, count, width, height);
+
+        // First find every pair that touched, without changing anything
+        contacts.clear();
+        for (int i = 0; i < count; i++) {
+            int found = collisionGrid.query(x[i], y[i], reach[i], candidates);
+            int[] indices = candidates.getFound();
+            for (int k = 0; k < found; k++) {
+                int j = indices[k];
+                if (i == j) {
+                    continue;
+                }
+                if (Ball.isSweptCollision(x[i], y[i], prevX[i], prevY[i], radius[i], x[j], y[j], prevX[j], prevY[j],
+                        radius[j])) {
+                    contacts.add(i, j);
+                }
+            }
+        }
+
+        // Then apply the rules to each pair, in the order they were found
+        byte master = (byte) BallType.MASTER.ordinal();
+        for (int n = 0; n < contacts.size(); n++) {
+            int i = contacts.getBall(n);
+            int j = contacts.getOtherBall(n);
+            if (type[i] == master) {
+                radius[j] = World.MASTER_CONTACT_RADIUS;
+                radius[i] = 0;
+            }
+            if (radius[i] > radius[j]) {
+                radius[i] += ExpandableBall.CHANGE_SPEED;
+                radius[j] -= ExpandableBall.CHANGE_SPEED;
+            } else {
+                radius[i] -= ExpandableBall.CHANGE_SPEED;
+                radius[j] += ExpandableBall.CHANGE_SPEED;
+            }
+        }
+    }
+
+    /**
+     * Removes balls that have been consumed, keeping the rest in order.
+     */
+    void removeConsumed() {
+        int kept = 0;
+        for (int i = 0; i < count; i++) {
+            if (area(i) <= 1) {
+                if (i == userIndex) {
+                    userIndex = -1;
+                }
+                continue;
+            }
+            if (i == userIndex) {
+                userIndex = kept;
+            }
+            if (kept != i) {
+                x[kept] = x[i];
+                y[kept] = y[i];
+                prevX[kept] = prevX[i];
+                prevY[kept] = prevY[i];
+                xSpeed[kept] = xSpeed[i];
+                ySpeed[kept] = ySpeed[i];
+                maxSpeed[kept] = maxSpeed[i];
+                radius[kept] = radius[i];
+                color[kept] = color[i];
+                type[kept] = type[i];
+                id[kept] = id[i];
+                flags[kept] = flags[i];
+                thinkIn[kept] = thinkIn[i];
+                target[kept] = target[i];
+            }
+            kept++;
+        }
+        count = kept;
+    }
+
+    /**
+     * Steers every computer controlled ball relative to the ball closest to
+     * it, one kind of ball at a time.
+     */
+    void steer() {
+        int size = Math.max(1, count);
+        grid.build(x, y, count, width, height, Math.sqrt((double) width * height / size));
+
+        // ConsumingBalls head for the closest ball
+        byte consuming = (byte) BallType.CONSUMING.ordinal();
+        for (int i = 0; i < count; i++) {
+            if (type[i] == consuming) {
+                int closest = grid.nearest(x[i], y[i], i);
+                if (closest >= 0) {
+                    accelerate(i, x[closest], y[closest], 1);
+                }
+            }
+        }
+
+        // EvadingBalls run away from the closest ball
+        byte evading = (byte) BallType.EVADING.ordinal();
+        for (int i = 0; i < count; i++) {
+            if (type[i] == evading) {
+                int closest = grid.nearest(x[i], y[i], i);
+                if (closest >= 0) {
+                    accelerate(i, x[closest], y[closest], -1);
+                }
+            }
+        }
+
+        // IntelligentBalls run from bigger balls and chase smaller ones
+        byte intelligent = (byte) BallType.INTELLIGENT.ordinal();
+        for (int i = 0; i < count; i++) {
+            if (type[i] == intelligent) {
+                int closest = grid.nearest(x[i], y[i], i);
+                if (closest >= 0) {
+                    boolean bigger = area(closest) >= area(i);
+                    accelerate(i, x[closest], y[closest], bigger ? -1 : 1);
+                }
+            }
+        }
+    }
+
+    /**
+     * Same as <code>GeometricObject.accelerate</code> (direction 1) and
+     * <code>GeometricObject.decelerate</code> (direction -1).
+     */
+    private void accelerate(int i, double xPos, double yPos, int direction) {
+        double deltaX = xPos - x[i];
+        double deltaY = yPos - y[i];
+        double total = Math.sqrt(deltaX * deltaX + deltaY * deltaY);
+        if (total == 0)
+            return;
+        double limit = maxSpeed[i];
+        xSpeed[i] = Math.max(-limit, Math.min(limit, xSpeed[i] + direction * deltaX / total));
+        ySpeed[i] = Math.max(-limit, Math.min(limit, ySpeed[i] + direction * deltaY / total));
+    }
+
+    /**
+     * @return how far ball i went in its last move
+     */
+    private double travel(int i) {
+        double deltaX = x[i] - prevX[i];
+        double deltaY = y[i] - prevY[i];
+        return Math.sqrt(deltaX * deltaX + deltaY * deltaY);
+    }
+
+    private double area(int i) {
+        return Math.PI * radius[i] * radius[i];
+    }
+
+    /**
+     * Moves every ball, the fast ones in several pieces (the same way as
+     * <code>World.moveObject()</code>).
+     */
+    void move() {
+        double distance = World.SUBSTEP_DISTANCE / timestep;
+        for (int i = 0; i < count; i++) {
+            prevX[i] = x[i];
+            prevY[i] = y[i];
+            double speedSquared = xSpeed[i] * xSpeed[i] + ySpeed[i] * ySpeed[i];
+            if (speedSquared <= distance * distance) {
+                x[i] += xSpeed[i] * timestep;
+                y[i] += ySpeed[i] * timestep;
+                continue;
+            }
+            int substeps = (int) Math.ceil(Math.sqrt(speedSquared) * timestep / World.SUBSTEP_DISTANCE);
+            double substep = timestep / substeps;
+            for (int s = 0; s < substeps; s++) {
+                if (s > 0) {
+                    bounceOffWalls(i);
+                }
+                x[i] += xSpeed[i] * substep;
+                y[i] += ySpeed[i] * substep;
+            }
+        }
+    }
+}
@@ -31,15 +31,98 @@ public class Ball extends GeometricObject implements Colorable {
         }
 
         // No collision if they are too far apart
-        if (Ball.distance(ball1, ball2) > (ball1.radius + ball2.radius)) {
+        return isTouching(ball1.xPos, ball1.yPos, ball1.radius, ball2.xPos, ball2.yPos, ball2.radius);
+    }
+
+    /**
+     * Checks if two balls touched at any time during their last move, not
+     * just where they are now. This catches a fast ball that went right
+     * through another one in a single step.
+     * 
+     * @param ball1 Ball to check
+     * @param ball2 Ball to check
+     * @return true if ball1 and ball2 overlapped at some point during their
+     *         last move; otherwise false
+     */
+    public static boolean isSweptCollision(Ball ball1, Ball ball2) {
+        // No collision if either ball doesn't exist
+        if ((ball1 == null) || (ball2 == null) || (ball1 == ball2)) {
             return false;
         }
+        return isSweptCollision(ball1.xPos, ball1.yPos, ball1.prevXPos, ball1.prevYPos, ball1.radius, ball2.xPos,
+                ball2.yPos, ball2.prevXPos, ball2.prevYPos, ball2.radius);
+    }
 
-        return true;
+    /**
+     * Same as <code>isSweptCollision(ball1, ball2)</code>, for balls stored as
+     * plain numbers. Both balls are taken to have moved in a straight line
+     * from (prevX, prevY) to (x, y) at a steady speed. If neither moved more
+     * than <code>World.SWEEP_DISTANCE</code>, only where they are now counts,
+     * which is exactly what <code>isCollision()</code> checks.
+     */
+    static boolean isSweptCollision(double x1, double y1, double prevX1, double prevY1, double radius1, double x2,
+            double y2, double prevX2, double prevY2, double radius2) {
+        return isTouching(x1, y1, radius1, x2, y2, radius2)
+                || touchedAlongPath(x1, y1, prevX1, prevY1, radius1, x2, y2, prevX2, prevY2, radius2);
     }
 
+    /**
+     * Same as <code>isCollision()</code>, for balls stored as plain numbers.
+     * Distances are compared squared, so there is no square root to take.
+     *
+     * @return true if the two balls overlap where they are now
+     */
+    static boolean isTouching(double x1, double y1, double radius1, double x2, double y2, double radius2) {
+        double deltaX = x1 - x2;
+        double deltaY = y1 - y2;
+        double limit = radius1 + radius2;
+        return (deltaX * deltaX + deltaY * deltaY <= limit * limit) && (limit >= 0);
+    }
+
+    /**
+     * The second half of <code>isSweptCollision()</code>, for balls already
+     * known not to be touching where they are now.
+     *
+     * @return true if the two balls touched somewhere along the way
+     */
+    static boolean touchedAlongPath(double x1, double y1, double prevX1, double prevY1, double radius1, double x2,
+            double y2, double prevX2, double prevY2, double radius2) {
+        double limit = radius1 + radius2;
+        double move1X = x1 - prevX1;
+        double move1Y = y1 - prevY1;
+        double move2X = x2 - prevX2;
+        double move2Y = y2 - prevY2;
+        double sweep = World.SWEEP_DISTANCE * World.SWEEP_DISTANCE;
+        if ((move1X * move1X + move1Y * move1Y <= sweep) && (move2X * move2X + move2Y * move2Y <= sweep)) {
+            return false;
+        }
+        // Balls shrunk past nothing can't touch anything
+        if (limit < 0) {
+            return false;
+        }
+
+        // Seen from ball 2, ball 1 moved in a straight line; find the point
+        // on that line closest to ball 2
+        double startX = prevX1 - prevX2;
+        double startY = prevY1 - prevY2;
+        double moveX = move1X - move2X;
+        double moveY = move1Y - move2Y;
+        double lengthSquared = moveX * moveX + moveY * moveY;
+        if (lengthSquared == 0) {
+            return false;
+        }
+        double t = -(startX * moveX + startY * moveY) / lengthSquared;
+        t = Math.max(0, Math.min(1, t));
+        double closestX = startX + moveX * t;
+        double closestY = startY + moveY * t;
+        return closestX * closestX + closestY * closestY <= limit * limit;
+    }
+
+    // Size of a ball unless told otherwise
+    static final double DEFAULT_RADIUS = 10.0;
+
     // Size of this ball
-    protected double radius = 10.0;
+    protected double radius = DEFAULT_RADIUS;
 
     // Colorable attributes associated with this object
     protected int red = 0;
@@ -121,13 +204,13 @@ public class Ball extends GeometricObject implements Colorable {
     }
 
     @Override
-    public void draw(PApplet applet) {
+    public void draw(PApplet applet, float alpha) {
         
         if (applet == null)
             return;
         
         applet.fill(red, green, blue);
-        applet.ellipse((float) xPos, (float) yPos, (float) (radius * 2), (float) (radius * 2));
+        applet.ellipse((float) getDrawX(alpha), (float) getDrawY(alpha), (float) (radius * 2), (float) (radius * 2));
     }
 
 	@Override
@@ -0,0 +1,60 @@
+package edu.nyu.cs.cs101.consumers;
+
+import java.util.ArrayList;
+
+/**
+ * Keeps balls that have been consumed so that they can be used again instead
+ * of creating new ones, with a separate pile for each kind of ball. Once the
+ * game has been running for a while, creating a ball no longer allocates any
+ * memory, so the garbage collector has nothing to clean up mid-game.
+ *
+ * @author Katie Kroik
+ */
+class BallPool {
+    private final ArrayList<ArrayList<ExpandableBall>> free = new ArrayList<ArrayList<ExpandableBall>>();
+
+    BallPool() {
+        for (int i = 0; i < BallType.values().length; i++) {
+            free.add(new ArrayList<ExpandableBall>());
+        }
+    }
+
+    /**
+     * Gets a ball of the given kind, either one that was given back or a new
+     * one. It looks just like a newly created ball: it is standing still at
+     * (x, y), with the default size and maximum speed.
+     *
+     * @param type of ball
+     * @param x location for the ball
+     * @param y location for the ball
+     * @return the ball
+     */
+    ExpandableBall obtain(BallType type, int x, int y) {
+        ArrayList<ExpandableBall> balls = free.get(type.ordinal());
+        if (balls.isEmpty()) {
+            return type.create(x, y);
+        }
+        ExpandableBall ball = balls.remove(balls.size() - 1);
+        ball.setPos(x, y);
+        ball.setSpeed(0, 0);
+        ball.radius = Ball.DEFAULT_RADIUS;
+        ball.maxSpeed = World.STARTING_MAX_SPEED;
+        ball.sleepUntil = 0;
+        ball.nextSleepCheck = 0;
+        ball.player = false;
+        ball.hold(null, 0);
+        return ball;
+    }
+
+    /**
+     * Gives back a ball that is no longer in the game. Nothing else may use
+     * the ball afterwards.
+     *
+     * @param ball to give back
+     */
+    void release(ExpandableBall ball) {
+        // Anything still holding on to the ball can tell it is gone
+        ball.id = -1;
+        free.get(BallType.of(ball).ordinal()).add(ball);
+    }
+}
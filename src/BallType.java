@@ -0,0 +1,95 @@
+package edu.nyu.cs.cs101.consumers;
+
+/**
+ * The different kinds of ball in the game. Code that stores balls as plain
+ * numbers instead of objects (see <code>ArrayWorld</code>) uses these to
+ * remember what kind of ball each one is.
+ *
+ * @author Katie Kroik
+ */
+public enum BallType {
+    EXPANDABLE, EVADING, CONSUMING, INTELLIGENT, MASTER, BOUNCY;
+
+    private static final BallType[] TYPES = values();
+
+    /**
+     * @param ordinal of the type
+     * @return the type with that ordinal
+     */
+    public static BallType get(int ordinal) {
+        return TYPES[ordinal];
+    }
+
+    /**
+     * @param object to look at
+     * @return what kind of ball the object is, or null if it is not a ball
+     */
+    public static BallType of(GeometricObject object) {
+        if (object instanceof EvadingBall) {
+            return EVADING;
+        } else if (object instanceof ConsumingBall) {
+            return CONSUMING;
+        } else if (object instanceof IntelligentBall) {
+            return INTELLIGENT;
+        } else if (object instanceof MasterBall) {
+            return MASTER;
+        } else if (object instanceof BouncyBall) {
+            return BOUNCY;
+        } else if (object instanceof ExpandableBall) {
+            return EXPANDABLE;
+        }
+        return null;
+    }
+
+    /**
+     * Creates a new ball of this type.
+     *
+     * @param x location for the ball
+     * @param y location for the ball
+     * @return the new ball
+     */
+    public ExpandableBall create(int x, int y) {
+        switch (this) {
+        case EVADING:
+            return new EvadingBall(x, y);
+        case CONSUMING:
+            return new ConsumingBall(x, y);
+        case INTELLIGENT:
+            return new IntelligentBall(x, y);
+        case MASTER:
+            return new MasterBall(x, y);
+        case BOUNCY:
+            return new BouncyBall(x, y);
+        default:
+            return new ExpandableBall(x, y);
+        }
+    }
+
+    /**
+     * Creates an exact copy of a ball: same kind, position (and where it
+     * was before its last move), speed, size and color.
+     *
+     * @param ball to copy
+     * @return the copy
+     */
+    public static ExpandableBall copy(ExpandableBall ball) {
+        ExpandableBall copy = of(ball).create(0, 0);
+        copy.setPos(ball.xPos, ball.yPos);
+        copy.prevXPos = ball.prevXPos;
+        copy.prevYPos = ball.prevYPos;
+        copy.setSpeed(ball.xSpeed, ball.ySpeed);
+        copy.radius = ball.radius;
+        copy.maxSpeed = ball.maxSpeed;
+        copy.id = ball.id;
+        copy.setColor(ball.getRed(), ball.getGreen(), ball.getBlue());
+        return copy;
+    }
+
+    /**
+     * @return true if balls of this type steer towards or away from the ball
+     *         closest to them every step
+     */
+    public boolean steers() {
+        return (this == EVADING) || (this == CONSUMING) || (this == INTELLIGENT);
+    }
+}
@@ -0,0 +1,316 @@
+package edu.nyu.cs.cs101.consumers;
+
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Plays lots of games without a window, to see how the kinds of ball and the
+ * rules of the game change who wins. Every game has its own
+ * <code>World</code>, so games share nothing and run side by side on all
+ * cores, one game per thread at a time. A game goes on until there is at
+ * most one ball left or it runs out of steps.
+ *
+ * Every combination of the mixes and rules given is played the same number
+ * of times, each time with the same seeds, and a table is printed with one
+ * row per combination: how many games finished, how many steps they took on
+ * average, how many balls were left, and how often each kind of ball was the
+ * winner (the biggest ball left at the end; the user's ball, which just sits
+ * in the middle, counts as an expandable ball).
+ *
+ * <pre>
+ * --games N              games per combination (default 1000)
+ * --balls N              balls besides the user's (default 30)
+ * --steps N              most steps a game can take (default 20000)
+ * --threads T            games to play at once (default: one per core)
+ * --seed S               seed of the first game; the others count up from it
+ *                        (default: random)
+ * --mix a,b,c,d,e,f      how often each kind of ball is made (may be given
+ *                        more than once)
+ * --change-speed X,...   how much balls grow and shrink when they touch
+ * --max-speed X,...      fastest the computer controlled balls go
+ * --master-radius X,...  radius a MasterBall leaves behind
+ * --master-steers B,...  true to make MasterBalls chase bigger balls
+ * </pre>
+ *
+ * Usage: <code>java edu.nyu.cs.cs101.consumers.BatchRunner [options]</code>
+ *
+ * @author Katie Kroik
+ */
+public class BatchRunner {
+    private static final int DEFAULT_GAMES = 1000;
+    private static final long DEFAULT_STEPS = 20000;
+
+    /**
+     * One combination of settings to play games with.
+     */
+    static class Config {
+        final int[] typeMix;
+        final Rules rules;
+
+        Config(int[] typeMix, Rules rules) {
+            this.typeMix = typeMix;
+            this.rules = rules;
+        }
+    }
+
+    /**
+     * How one game ended.
+     */
+    static class Result {
+        // Steps taken
+        long steps;
+        // Balls left at the end
+        int survivors;
+        // BallType ordinal of the biggest ball left, or -1 if there is none
+        int winner = -1;
+
+        /**
+         * @return true if the game ended before running out of steps
+         */
+        boolean isFinished() {
+            return survivors <= 1;
+        }
+    }
+
+    /**
+     * Plays one game.
+     *
+     * @param config to play with
+     * @param balls number of balls besides the user's
+     * @param seed for making up the balls
+     * @param maxSteps most steps to take
+     * @return how the game ended
+     */
+    static Result play(Config config, int balls, long seed, long maxSteps) {
+        World world = Simulation.createEmptyWorld(balls, seed);
+        world.setTypeMix(config.typeMix);
+        world.setRules(config.rules);
+        world.createObjects(balls);
+        ArrayList<GeometricObject> objects = world.getObjects();
+
+        Result result = new Result();
+        while ((result.steps < maxSteps) && (objects.size() > 1)) {
+            world.step();
+            result.steps++;
+        }
+        result.survivors = objects.size();
+        double biggest = 0;
+        for (GeometricObject object : objects) {
+            if ((object instanceof Ball) && ((result.winner < 0) || (((Ball) object).radius > biggest))) {
+                biggest = ((Ball) object).radius;
+                result.winner = BallType.of(object).ordinal();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Makes every combination of the mixes and rules given.
+     */
+    static ArrayList<Config> combine(ArrayList<int[]> mixes, double[] changeSpeeds, double[] maxSpeeds,
+            double[] masterRadii, boolean[] masterSteers) {
+        ArrayList<Config> configs = new ArrayList<Config>();
+        for (int[] mix : mixes) {
+            for (double changeSpeed : changeSpeeds) {
+                for (double maxSpeed : maxSpeeds) {
+                    for (double masterRadius : masterRadii) {
+                        for (boolean steers : masterSteers) {
+                            Rules rules = new Rules();
+                            rules.setChangeSpeed(changeSpeed);
+                            rules.setStartingMaxSpeed(maxSpeed);
+                            rules.setMasterContactRadius(masterRadius);
+                            rules.setMasterSteers(steers);
+                            configs.add(new Config(mix, rules));
+                        }
+                    }
+                }
+            }
+        }
+        return configs;
+    }
+
+    /**
+     * Plays <code>games</code> games of every combination on
+     * <code>threads</code> threads.
+     *
+     * @return the results, by combination and then by game
+     * @throws InterruptedException if interrupted while waiting for a game
+     */
+    static Result[][] playAll(ArrayList<Config> configs, final int games, final int balls, final long seed,
+            final long maxSteps, int threads) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        Result[][] results = new Result[configs.size()][games];
+        try {
+            ArrayList<Future<Result>> futures = new ArrayList<Future<Result>>();
+            for (final Config config : configs) {
+                for (int game = 0; game < games; game++) {
+                    final long gameSeed = seed + game;
+                    futures.add(executor.submit(new Callable<Result>() {
+                        @Override
+                        public Result call() {
+                            return play(config, balls, gameSeed, maxSteps);
+                        }
+                    }));
+                }
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    results[i / games][i % games] = futures.get(i).get();
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException("A game failed", e.getCause());
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return results;
+    }
+
+    /**
+     * Prints a row of the table for each combination.
+     */
+    static void print(ArrayList<Config> configs, Result[][] results) {
+        StringBuilder header = new StringBuilder("mix\tchange\tspeed\tmaster\tsteers\tgames\tfinished\tsteps\tleft");
+        for (BallType type : BallType.values()) {
+            header.append('\t').append(type.name().toLowerCase());
+        }
+        System.out.println(header);
+        for (int c = 0; c < configs.size(); c++) {
+            Config config = configs.get(c);
+            int finished = 0;
+            long steps = 0;
+            long survivors = 0;
+            int[] wins = new int[BallType.values().length];
+            for (Result result : results[c]) {
+                if (result.isFinished()) {
+                    finished++;
+                }
+                steps += result.steps;
+                survivors += result.survivors;
+                if (result.winner >= 0) {
+                    wins[result.winner]++;
+                }
+            }
+            int games = results[c].length;
+            StringBuilder row = new StringBuilder();
+            for (int i = 0; i < config.typeMix.length; i++) {
+                row.append((i == 0) ? "" : ",").append(config.typeMix[i]);
+            }
+            row.append('\t').append(config.rules.getChangeSpeed());
+            row.append('\t').append(config.rules.getStartingMaxSpeed());
+            row.append('\t').append(config.rules.getMasterContactRadius());
+            row.append('\t').append(config.rules.isMasterSteers());
+            row.append('\t').append(games);
+            row.append('\t').append(finished);
+            row.append('\t').append(String.format("%.1f", (double) steps / games));
+            row.append('\t').append(String.format("%.2f", (double) survivors / games));
+            for (int win : wins) {
+                row.append('\t').append(win);
+            }
+            System.out.println(row);
+        }
+    }
+
+    private static double[] parseNumbers(String name, String value) {
+        String[] parts = value.split(",");
+        double[] numbers = new double[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            try {
+                numbers[i] = Double.parseDouble(parts[i].trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Bad value for " + name + ": " + value);
+            }
+        }
+        return numbers;
+    }
+
+    private static boolean[] parseBooleans(String name, String value) {
+        String[] parts = value.split(",");
+        boolean[] values = new boolean[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            String part = parts[i].trim();
+            if (!part.equals("true") && !part.equals("false")) {
+                throw new IllegalArgumentException("Bad value for " + name + ": " + value);
+            }
+            values[i] = part.equals("true");
+        }
+        return values;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int games = DEFAULT_GAMES;
+        int balls = World.NUM_OBJECTS;
+        long maxSteps = DEFAULT_STEPS;
+        int threads = Runtime.getRuntime().availableProcessors();
+        long seed = System.nanoTime();
+        ArrayList<int[]> mixes = new ArrayList<int[]>();
+        Rules defaults = new Rules();
+        double[] changeSpeeds = { defaults.getChangeSpeed() };
+        double[] maxSpeeds = { defaults.getStartingMaxSpeed() };
+        double[] masterRadii = { defaults.getMasterContactRadius() };
+        boolean[] masterSteers = { defaults.isMasterSteers() };
+        ArrayList<Config> configs;
+        try {
+            for (int i = 0; i < args.length; i += 2) {
+                String name = args[i];
+                if (i + 1 >= args.length) {
+                    throw new IllegalArgumentException("Missing value for " + name);
+                }
+                String value = args[i + 1];
+                try {
+                    if (name.equals("--games")) {
+                        games = Integer.parseInt(value);
+                    } else if (name.equals("--balls")) {
+                        balls = Integer.parseInt(value);
+                    } else if (name.equals("--steps")) {
+                        maxSteps = Long.parseLong(value);
+                    } else if (name.equals("--threads")) {
+                        threads = Integer.parseInt(value);
+                    } else if (name.equals("--seed")) {
+                        seed = Long.parseLong(value);
+                    } else if (name.equals("--mix")) {
+                        mixes.add(CommandLineArgs.parseMix(value));
+                    } else if (name.equals("--change-speed")) {
+                        changeSpeeds = parseNumbers(name, value);
+                    } else if (name.equals("--max-speed")) {
+                        maxSpeeds = parseNumbers(name, value);
+                    } else if (name.equals("--master-radius")) {
+                        masterRadii = parseNumbers(name, value);
+                    } else if (name.equals("--master-steers")) {
+                        masterSteers = parseBooleans(name, value);
+                    } else {
+                        throw new IllegalArgumentException("Unknown argument " + name);
+                    }
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Bad value for " + name + ": " + value);
+                }
+            }
+            if ((games <= 0) || (balls <= 0) || (maxSteps <= 0) || (threads <= 0)) {
+                throw new IllegalArgumentException("--games, --balls, --steps and --threads must be more than 0");
+            }
+            if (mixes.isEmpty()) {
+                mixes.add(World.DEFAULT_TYPE_MIX);
+            }
+            configs = combine(mixes, changeSpeeds, maxSpeeds, masterRadii, masterSteers);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: BatchRunner [--games N] [--balls N] [--steps N] [--threads T] [--seed S]"
+                    + " [--mix a,b,c,d,e,f]... [--change-speed X,...] [--max-speed X,...]"
+                    + " [--master-radius X,...] [--master-steers B,...]");
+            System.exit(1);
+            return;
+        }
+
+        long start = System.nanoTime();
+        Result[][] results = playAll(configs, games, balls, seed, maxSteps, threads);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        print(configs, results);
+        long total = (long) configs.size() * games;
+        System.out.println(total + " games in " + seconds + "s (" + String.format("%.1f", total / seconds)
+                + " games/sec) on " + threads + " threads, seed " + seed);
+    }
+}
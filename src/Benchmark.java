@@ -0,0 +1,379 @@
+package edu.nyu.cs.cs101.consumers;
+
+import java.util.ArrayList;
+
+/**
+ * Micro-benchmarks for the hot paths of the game: distances, finding the
+ * closest ball, collision tests, the collision pass, every kind of steering
+ * and a whole world step. Each one is run against worlds of 30, 1,000, 10,000
+ * and 100,000 balls made with the normal mix of ball types, so we have numbers
+ * to compare before and after changing the engine.
+ *
+ * Every benchmark is warmed up first (so the JIT has compiled it), then timed
+ * over several measurement rounds. Anything that changes the world gets a
+ * fresh copy before every round, outside the timed part.
+ *
+ * Usage: <code>java edu.nyu.cs.cs101.consumers.Benchmark [balls ...]</code>
+ *
+ * @author Katie Kroik
+ */
+public class Benchmark {
+    private static final int[] DEFAULT_SIZES = { 30, 1000, 10000, 100000 };
+
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int MEASUREMENT_ROUNDS = 10;
+    // Aim for each round to take about this long
+    private static final long ROUND_NANOS = 100000000L;
+    // Skip benchmarks that would need more than this many distance
+    // calculations for a single call (the old steering is cubic)
+    private static final double MAX_WORK = 2e9;
+
+    // Results are written here so the JIT cannot throw the work away
+    static volatile long sink;
+
+    /**
+     * One thing to measure.
+     */
+    abstract static class Case {
+        final String name;
+
+        Case(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Gets ready for a round. Not timed.
+         *
+         * @param world the world for this round (a fresh copy)
+         */
+        void setUp(World world) {
+        }
+
+        /**
+         * @param balls number of balls in the world
+         * @return roughly how many distance calculations one call takes
+         */
+        double work(int balls) {
+            return balls;
+        }
+
+        /**
+         * Does whatever is being measured once.
+         *
+         * @return something computed, so that the work is not optimized away
+         */
+        abstract long run();
+
+        /**
+         * @return true if every call needs a fresh copy of the world
+         */
+        boolean changesWorld() {
+            return false;
+        }
+    }
+
+    /**
+     * @return every benchmark
+     */
+    static ArrayList<Case> cases() {
+        ArrayList<Case> cases = new ArrayList<Case>();
+
+        cases.add(new Case("GeometricObject.distance") {
+            ArrayList<GeometricObject> objects;
+            int next;
+
+            void setUp(World world) {
+                objects = world.getObjects();
+            }
+
+            double work(int balls) {
+                return 1;
+            }
+
+            long run() {
+                int size = objects.size();
+                next = (next + 1) % size;
+                double distance = GeometricObject.distance(objects.get(next), objects.get((next * 7 + 3) % size));
+                return (long) distance;
+            }
+        });
+
+        cases.add(new Case("Ball.isCollision") {
+            ArrayList<GeometricObject> objects;
+            int next;
+
+            void setUp(World world) {
+                objects = world.getObjects();
+            }
+
+            double work(int balls) {
+                return 1;
+            }
+
+            long run() {
+                int size = objects.size();
+                next = (next + 1) % size;
+                boolean collision = Ball.isCollision((Ball) objects.get(next), (Ball) objects.get((next * 7 + 3) % size));
+                return collision ? 1 : 0;
+            }
+        });
+
+        cases.add(new Case("GeometricObject.getClosest") {
+            ArrayList<GeometricObject> objects;
+            int next;
+
+            void setUp(World world) {
+                objects = world.getObjects();
+            }
+
+            long run() {
+                next = (next + 1) % objects.size();
+                return GeometricObject.getClosest(objects.get(next), objects).getX() > 0 ? 1 : 0;
+            }
+        });
+
+        cases.add(new Case("SpatialHash.nearest") {
+            ArrayList<GeometricObject> objects;
+            SpatialHash grid = new SpatialHash();
+            int next;
+
+            void setUp(World world) {
+                objects = world.getObjects();
+                grid.build(objects, world.getWidth(), world.getHeight(),
+                        Math.sqrt((double) world.getWidth() * world.getHeight() / objects.size()));
+            }
+
+            double work(int balls) {
+                return 1;
+            }
+
+            long run() {
+                next = (next + 1) % objects.size();
+                GeometricObject object = objects.get(next);
+                return grid.nearest(object.xPos, object.yPos, next);
+            }
+        });
+
+        cases.add(new Case("World.checkForObjectCollisions") {
+            World world;
+
+            void setUp(World world) {
+                this.world = world;
+            }
+
+            boolean changesWorld() {
+                return true;
+            }
+
+            long run() {
+                world.checkForObjectCollisions();
+                return world.getObjects().size();
+            }
+        });
+
+        cases.add(new Case("World.checkForObjectCollisions (brute force)") {
+            World world;
+
+            void setUp(World world) {
+                this.world = world;
+                world.setBruteForce(true);
+            }
+
+            double work(int balls) {
+                return (double) balls * balls;
+            }
+
+            boolean changesWorld() {
+                return true;
+            }
+
+            long run() {
+                world.checkForObjectCollisions();
+                return world.getObjects().size();
+            }
+        });
+
+        cases.add(new SteeringCase("ConsumingBall.accelerate", ConsumingBall.class) {
+            long steer(GeometricObject ball, ArrayList<GeometricObject> objects) {
+                ((ConsumingBall) ball).accelerate(objects);
+                return 1;
+            }
+        });
+        cases.add(new SteeringCase("EvadingBall.accelerate", EvadingBall.class) {
+            long steer(GeometricObject ball, ArrayList<GeometricObject> objects) {
+                ((EvadingBall) ball).accelerate(objects);
+                return 1;
+            }
+        });
+        cases.add(new SteeringCase("IntelligentBall.accelerate", IntelligentBall.class) {
+            long steer(GeometricObject ball, ArrayList<GeometricObject> objects) {
+                ((IntelligentBall) ball).accelerate(objects);
+                return 1;
+            }
+        });
+        cases.add(new SteeringCase("MasterBall.accelerate", MasterBall.class) {
+            long steer(GeometricObject ball, ArrayList<GeometricObject> objects) {
+                ((MasterBall) ball).accelerate(objects);
+                return 1;
+            }
+        });
+
+        cases.add(new Case("World.steerObjects") {
+            World world;
+
+            void setUp(World world) {
+                this.world = world;
+            }
+
+            boolean changesWorld() {
+                return true;
+            }
+
+            long run() {
+                world.steerObjects();
+                return world.getObjects().size();
+            }
+        });
+
+        cases.add(new Case("World.step") {
+            World world;
+
+            void setUp(World world) {
+                this.world = world;
+            }
+
+            long run() {
+                world.step();
+                return world.getObjects().size();
+            }
+        });
+
+        cases.add(new Case("ArrayWorld.step") {
+            ArrayWorld world;
+
+            void setUp(World world) {
+                this.world = new ArrayWorld(world);
+            }
+
+            long run() {
+                world.step();
+                return world.getCount();
+            }
+        });
+
+        return cases;
+    }
+
+    /**
+     * Calls one of the <code>accelerate(ArrayList)</code> methods. Each call
+     * steers every ball of that type, so the work grows with the number of
+     * those balls times the number of balls.
+     */
+    abstract static class SteeringCase extends Case {
+        private final Class<? extends GeometricObject> type;
+        private ArrayList<GeometricObject> objects;
+        private GeometricObject ball;
+
+        SteeringCase(String name, Class<? extends GeometricObject> type) {
+            super(name);
+            this.type = type;
+        }
+
+        void setUp(World world) {
+            objects = world.getObjects();
+            ball = null;
+            for (GeometricObject object : objects) {
+                if (type.isInstance(object)) {
+                    ball = object;
+                    break;
+                }
+            }
+        }
+
+        double work(int balls) {
+            // About a quarter of the balls are of any one steering type
+            return (double) balls * balls / 4;
+        }
+
+        long run() {
+            return (ball == null) ? 0 : steer(ball, objects);
+        }
+
+        abstract long steer(GeometricObject ball, ArrayList<GeometricObject> objects);
+    }
+
+    /**
+     * Measures one benchmark against one world.
+     *
+     * @param benchmark to run
+     * @param world to run it against (it is not changed)
+     * @return nanoseconds per call for every measurement round
+     */
+    static double[] measure(Case benchmark, World world) {
+        double[] results = new double[MEASUREMENT_ROUNDS];
+        int calls = 1;
+        for (int round = -WARMUP_ROUNDS; round < MEASUREMENT_ROUNDS; round++) {
+            long elapsed = 0;
+            long value = 0;
+            if (benchmark.changesWorld()) {
+                // Every call gets its own copy of the world
+                for (int call = 0; call < calls; call++) {
+                    benchmark.setUp(new World(world));
+                    long start = System.nanoTime();
+                    value += benchmark.run();
+                    elapsed += System.nanoTime() - start;
+                }
+            } else {
+                benchmark.setUp(new World(world));
+                long start = System.nanoTime();
+                for (int call = 0; call < calls; call++) {
+                    value += benchmark.run();
+                }
+                elapsed = System.nanoTime() - start;
+            }
+            sink += value;
+
+            if (round >= 0) {
+                results[round] = (double) elapsed / calls;
+            } else if (elapsed < ROUND_NANOS) {
+                // Still warming up: adjust the number of calls per round
+                calls = (int) Math.min(1000000, Math.max(1, calls * ROUND_NANOS / Math.max(1, elapsed)));
+            }
+        }
+        return results;
+    }
+
+    public static void main(String[] args) {
+        int[] sizes = DEFAULT_SIZES;
+        if (args.length > 0) {
+            sizes = new int[args.length];
+            for (int i = 0; i < args.length; i++) {
+                sizes[i] = Integer.parseInt(args[i]);
+            }
+        }
+
+        System.out.println("benchmark\tballs\tns/op\t+-");
+        for (int balls : sizes) {
+            World world = Simulation.createWorld(balls);
+            for (Case benchmark : cases()) {
+                if (benchmark.work(balls) > MAX_WORK) {
+                    System.out.println(benchmark.name + "\t" + balls + "\tskipped\t");
+                    continue;
+                }
+                double[] results = measure(benchmark, world);
+                double mean = 0;
+                for (double result : results) {
+                    mean += result;
+                }
+                mean /= results.length;
+                double variance = 0;
+                for (double result : results) {
+                    variance += (result - mean) * (result - mean);
+                }
+                double error = Math.sqrt(variance / results.length);
+                System.out.println(benchmark.name + "\t" + balls + "\t" + String.format("%.1f", mean) + "\t"
+                        + String.format("%.1f", error));
+            }
+        }
+    }
+}
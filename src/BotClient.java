@@ -0,0 +1,324 @@
+package edu.nyu.cs.cs101.consumers;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Plays on a <code>GameServer</code> with many bots at once, to see how the
+ * server holds up. Every bot has its own connection and keeps track of the
+ * balls it has been told about the way a real client would, checking that
+ * every update makes sense. A few times a second each bot heads for the
+ * closest smaller ball it knows of, or for a random spot if there is none.
+ *
+ * All the bots share one thread and one <code>Selector</code>.
+ *
+ * Usage: <code>java edu.nyu.cs.cs101.consumers.BotClient [host] [port] [bots] [seconds]</code>
+ *
+ * @author Katie Kroik
+ */
+public class BotClient implements Runnable {
+    // How often each bot picks where to go
+    private static final long INPUT_NANOS = 100000000L;
+    // What comes in while the bots are still connecting isn't counted
+    private static final long WARMUP_NANOS = 1000000000L;
+    private static final int DEFAULT_BOTS = 100;
+    private static final double DEFAULT_SECONDS = 10;
+
+    /**
+     * One bot and what it knows about the game.
+     */
+    private static class Bot {
+        final SocketChannel channel;
+        final ByteBuffer in = ByteBuffer.allocate(1 << 16);
+        final ByteBuffer out = ByteBuffer.allocate(Protocol.HEADER_SIZE + 8);
+        // Every ball the bot was told about, by id: x, y (in pixels
+        // times Protocol.POSITION_SCALE), radius (times RADIUS_SCALE), type
+        final HashMap<Integer, int[]> known = new HashMap<Integer, int[]>();
+        int ballId = -1;
+        int width;
+        int height;
+        long nextInput;
+
+        Bot(SocketChannel channel) {
+            this.channel = channel;
+            out.flip();
+        }
+    }
+
+    private final String host;
+    private final int port;
+    private final int count;
+    private final Random rand = new Random();
+    private volatile boolean running = true;
+
+    // What the bots got
+    private long updates = 0;
+    private long bytesReceived = 0;
+    private long welcomes = 0;
+    private long errors = 0;
+    private long disconnects = 0;
+    // Time from the server sending an update to a bot reading it, in
+    // nanoseconds (only meaningful when the server runs in the same process)
+    private final Histogram delays = new Histogram();
+    private long startTime;
+    private long endTime;
+    private boolean warmedUp = false;
+
+    /**
+     * @param host to connect to
+     * @param port to connect to
+     * @param count number of bots
+     */
+    public BotClient(String host, int port, int count) {
+        this.host = host;
+        this.port = port;
+        this.count = count;
+    }
+
+    /**
+     * Connects the bots and plays until <code>stop()</code> is called.
+     */
+    @Override
+    public void run() {
+        Selector selector = null;
+        try {
+            selector = Selector.open();
+            for (int i = 0; i < count; i++) {
+                SocketChannel channel = SocketChannel.open(new InetSocketAddress(host, port));
+                channel.configureBlocking(false);
+                channel.socket().setTcpNoDelay(true);
+                Bot bot = new Bot(channel);
+                bot.nextInput = System.nanoTime() + (long) (rand.nextDouble() * INPUT_NANOS);
+                channel.register(selector, SelectionKey.OP_READ, bot);
+            }
+            startTime = System.nanoTime();
+            while (running) {
+                selector.select(10);
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (key.isValid() && key.isReadable()) {
+                        receive(key, (Bot) key.attachment());
+                    }
+                }
+                long now = System.nanoTime();
+                if (!warmedUp && (now - startTime >= WARMUP_NANOS)) {
+                    warmedUp = true;
+                    startTime = now;
+                    updates = 0;
+                    bytesReceived = 0;
+                    welcomes = 0;
+                    delays.reset();
+                }
+                for (SelectionKey key : selector.keys()) {
+                    Bot bot = (Bot) key.attachment();
+                    if (key.isValid() && (now >= bot.nextInput)) {
+                        bot.nextInput = now + INPUT_NANOS;
+                        sendInput(key, bot);
+                    }
+                }
+            }
+            endTime = System.nanoTime();
+        } catch (IOException e) {
+            Log.log(Log.ERROR, "Bots stopped: network failure");
+        } finally {
+            if (selector != null) {
+                for (SelectionKey key : selector.keys()) {
+                    try {
+                        key.channel().close();
+                    } catch (IOException e) {
+                        // Closing anyway
+                    }
+                }
+                try {
+                    selector.close();
+                } catch (IOException e) {
+                    // Closing anyway
+                }
+            }
+        }
+    }
+
+    /**
+     * Makes <code>run()</code> disconnect the bots and return.
+     */
+    public void stop() {
+        running = false;
+    }
+
+    private void receive(SelectionKey key, Bot bot) throws IOException {
+        ByteBuffer in = bot.in;
+        int read = bot.channel.read(in);
+        if (read < 0) {
+            disconnects++;
+            key.cancel();
+            bot.channel.close();
+            return;
+        }
+        bytesReceived += read;
+        in.flip();
+        while (in.remaining() >= 4) {
+            int length = in.getInt(in.position());
+            if (in.remaining() < 4 + length) {
+                break;
+            }
+            int end = in.position() + 4 + length;
+            in.getInt();
+            byte kind = in.get();
+            if (kind == Protocol.WELCOME) {
+                bot.ballId = in.getInt();
+                bot.width = in.getInt();
+                bot.height = in.getInt();
+                welcomes++;
+            } else if (kind == Protocol.UPDATE) {
+                readUpdate(bot, in);
+            } else {
+                errors++;
+            }
+            if (in.position() != end) {
+                errors++;
+                in.position(end);
+            }
+        }
+        in.compact();
+    }
+
+    private void readUpdate(Bot bot, ByteBuffer in) {
+        in.getLong();
+        delays.record(System.nanoTime() - in.getLong());
+        updates++;
+        int balls = in.getInt();
+        for (int k = 0; k < balls; k++) {
+            int id = in.getInt();
+            int flags = in.get();
+            int[] ball = bot.known.get(id);
+            if ((flags & Protocol.ENTER) != 0) {
+                if (ball != null) {
+                    errors++;
+                }
+                ball = new int[4];
+                ball[3] = in.get();
+                ball[0] = in.getInt();
+                ball[1] = in.getInt();
+                ball[2] = in.getShort();
+                bot.known.put(id, ball);
+                continue;
+            }
+            if (ball == null) {
+                // Told about a change to a ball we never heard of
+                errors++;
+                ball = new int[4];
+            }
+            if ((flags & Protocol.SMALL_MOVE) != 0) {
+                ball[0] += in.get();
+                ball[1] += in.get();
+            } else if ((flags & Protocol.MOVE) != 0) {
+                ball[0] = in.getInt();
+                ball[1] = in.getInt();
+            }
+            if ((flags & Protocol.RESIZE) != 0) {
+                ball[2] = in.getShort();
+            }
+        }
+        int removed = in.getInt();
+        for (int k = 0; k < removed; k++) {
+            if (bot.known.remove(in.getInt()) == null) {
+                errors++;
+            }
+        }
+    }
+
+    /**
+     * Sends where the bot wants to go: the closest ball it can eat, or
+     * somewhere random.
+     */
+    private void sendInput(SelectionKey key, Bot bot) throws IOException {
+        if (bot.out.hasRemaining() || (bot.ballId < 0)) {
+            return;
+        }
+        int[] own = bot.known.get(bot.ballId);
+        float x;
+        float y;
+        int[] target = null;
+        if (own != null) {
+            long shortest = Long.MAX_VALUE;
+            for (Map.Entry<Integer, int[]> entry : bot.known.entrySet()) {
+                int[] ball = entry.getValue();
+                if ((entry.getKey() == bot.ballId) || (ball[2] >= own[2])) {
+                    continue;
+                }
+                long deltaX = ball[0] - own[0];
+                long deltaY = ball[1] - own[1];
+                long distance = deltaX * deltaX + deltaY * deltaY;
+                if (distance < shortest) {
+                    shortest = distance;
+                    target = ball;
+                }
+            }
+        }
+        if (target != null) {
+            x = (float) (target[0] / Protocol.POSITION_SCALE);
+            y = (float) (target[1] / Protocol.POSITION_SCALE);
+        } else {
+            x = rand.nextInt(Math.max(1, bot.width));
+            y = rand.nextInt(Math.max(1, bot.height));
+        }
+        bot.out.clear();
+        bot.out.putInt(9);
+        bot.out.put(Protocol.INPUT);
+        bot.out.putFloat(x);
+        bot.out.putFloat(y);
+        bot.out.flip();
+        try {
+            bot.channel.write(bot.out);
+        } catch (IOException e) {
+            disconnects++;
+            key.cancel();
+            bot.channel.close();
+        }
+    }
+
+    /**
+     * Must only be called once <code>run()</code> has returned.
+     *
+     * @param withDelays true to include how old updates were when they
+     *        arrived, which only makes sense if the server is in the same
+     *        process
+     * @return what the bots got
+     */
+    public String describe(boolean withDelays) {
+        double seconds = (endTime - startTime) / 1e9;
+        String text = count + " bots: " + updates + " updates (" + Math.round(updates / seconds) + "/s), "
+                + Math.round(bytesReceived / 1024.0 / seconds) + " KB/s, "
+                + ((updates == 0) ? 0 : bytesReceived / updates) + " bytes per update, " + welcomes
+                + " balls given, " + errors + " errors, " + disconnects + " disconnects";
+        if (withDelays) {
+            text += String.format(", update delay p50 %.2f ms p99 %.2f ms max %.2f ms",
+                    delays.getPercentile(50) / 1e6, delays.getPercentile(99) / 1e6, delays.getMax() / 1e6);
+        }
+        return text;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        String host = (args.length > 0) ? args[0] : "localhost";
+        int port = (args.length > 1) ? Integer.parseInt(args[1]) : GameServer.DEFAULT_PORT;
+        int bots = (args.length > 2) ? Integer.parseInt(args[2]) : DEFAULT_BOTS;
+        double seconds = (args.length > 3) ? Double.parseDouble(args[3]) : DEFAULT_SECONDS;
+        BotClient client = new BotClient(host, port, bots);
+        Thread thread = new Thread(client, "BotClient");
+        thread.start();
+        Thread.sleep((long) (seconds * 1000));
+        client.stop();
+        thread.join();
+        System.out.println(client.describe(false));
+    }
+}
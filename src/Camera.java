@@ -0,0 +1,153 @@
+package edu.nyu.cs.cs101.consumers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Which part of the world is on the screen. The world can be much bigger
+ * than the window; the camera follows a point (usually the user's ball) and
+ * stops at the edges of the world, so the window never shows anything
+ * outside it. A world smaller than the window is shown in the middle.
+ *
+ * Everything the <code>Driver</code> draws is in world coordinates, moved by
+ * the camera; only what <code>isVisible()</code> is drawn at all, as found
+ * by <code>findVisible()</code>.
+ *
+ * @author Katie Kroik
+ */
+public class Camera {
+    // Size of the window
+    private final double viewWidth;
+    private final double viewHeight;
+    // Size of the world
+    private final double worldWidth;
+    private final double worldHeight;
+
+    // World position of the top left corner of the window
+    private double left;
+    private double top;
+
+    // Indices of the objects found by the last findVisible()
+    private int[] visible = new int[64];
+
+    /**
+     * Creates a camera looking at the middle of the world.
+     *
+     * @param viewWidth width of the window
+     * @param viewHeight height of the window
+     * @param worldWidth width of the world
+     * @param worldHeight height of the world
+     */
+    public Camera(double viewWidth, double viewHeight, double worldWidth, double worldHeight) {
+        this.viewWidth = viewWidth;
+        this.viewHeight = viewHeight;
+        this.worldWidth = worldWidth;
+        this.worldHeight = worldHeight;
+        follow(worldWidth / 2, worldHeight / 2);
+    }
+
+    /**
+     * Puts a point in the middle of the window, as far as the edges of the
+     * world allow.
+     *
+     * @param x position in the world
+     * @param y position in the world
+     */
+    public void follow(double x, double y) {
+        left = clamp(x - viewWidth / 2, worldWidth - viewWidth);
+        top = clamp(y - viewHeight / 2, worldHeight - viewHeight);
+    }
+
+    /**
+     * @param position wanted for the window's edge
+     * @param max furthest the edge can go without showing past the world
+     * @return where the edge goes
+     */
+    private static double clamp(double position, double max) {
+        if (max <= 0) {
+            // The world is smaller than the window: keep it in the middle
+            return max / 2;
+        }
+        return Math.max(0, Math.min(max, position));
+    }
+
+    /**
+     * @return world x of the left edge of the window
+     */
+    public double getLeft() {
+        return left;
+    }
+
+    /**
+     * @return world y of the top edge of the window
+     */
+    public double getTop() {
+        return top;
+    }
+
+    /**
+     * @param x position in the window
+     * @return the same position in the world
+     */
+    public double toWorldX(double x) {
+        return x + left;
+    }
+
+    /**
+     * @param y position in the window
+     * @return the same position in the world
+     */
+    public double toWorldY(double y) {
+        return y + top;
+    }
+
+    /**
+     * @param x center of a circle in the world
+     * @param y center of a circle in the world
+     * @param radius of the circle
+     * @return true if any of the circle's bounding box is in the window
+     */
+    public boolean isVisible(double x, double y, double radius) {
+        return (x + radius >= left) && (x - radius <= left + viewWidth) && (y + radius >= top)
+                && (y - radius <= top + viewHeight);
+    }
+
+    /**
+     * Finds the objects that can be seen through the window, in list order,
+     * drawn <code>alpha</code> of the way between their last two positions.
+     * Objects that aren't balls have no known size, so they are always
+     * included.
+     *
+     * @param objects to look through
+     * @param alpha how far between the last step and the next one to draw
+     * @return the number of objects found, which can be read with
+     *         <code>getVisible()</code>
+     */
+    public int findVisible(ArrayList<GeometricObject> objects, float alpha) {
+        int found = 0;
+        for (int i = 0; i < objects.size(); i++) {
+            GeometricObject object = objects.get(i);
+            // Ignore non-existent items
+            if (object == null) {
+                continue;
+            }
+            if ((object instanceof Ball)
+                    && !isVisible(object.getDrawX(alpha), object.getDrawY(alpha), ((Ball) object).getRadius())) {
+                continue;
+            }
+            if (found == visible.length) {
+                visible = Arrays.copyOf(visible, found * 2);
+            }
+            visible[found++] = i;
+        }
+        return found;
+    }
+
+    /**
+     * @return indices of the objects found by the last
+     *         <code>findVisible()</code>
+     */
+    public int[] getVisible() {
+        return visible;
+    }
+}
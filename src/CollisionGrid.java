@@ -0,0 +1,179 @@
+package edu.nyu.cs.cs101.consumers;
+
+/**
+ * Broadphase for ball-vs-ball collisions. It finds, for a given ball, every
+ * ball that might be touching it, in ascending index order.
+ *
+ * A single <code>SpatialHash</code> has to look as far as the biggest ball
+ * could reach, so one ball that has eaten its way to ten times the usual size
+ * makes every query look at a hundred times as many cells. To avoid that, the
+ * few balls that are much bigger than average are kept in a second, coarser
+ * grid. Small balls only need to look a short distance into the fine grid,
+ * and the handful of big balls are found through the coarse one.
+ *
+ * @author Katie Kroik
+ */
+class CollisionGrid {
+    // A ball this many times the average radius goes in the coarse grid
+    private static final double LARGE_RADIUS_FACTOR = 4;
+
+    private final SpatialHash smallGrid = new SpatialHash();
+    private final SpatialHash largeGrid = new SpatialHash();
+    private final Candidates candidates = new Candidates();
+
+    // Positions of the balls in each grid (NaN for balls not in that grid)
+    private double[] smallXs = new double[0];
+    private double[] largeXs = new double[0];
+    private double[] ys = new double[0];
+    private double[] radii = new double[0];
+    private boolean[] large = new boolean[0];
+    private int largeCount;
+
+    // Biggest radius in each grid
+    private double maxSmallRadius;
+    private double maxLargeRadius;
+
+    /**
+     * Holds the results of a query. Each thread querying the same grid needs
+     * its own.
+     */
+    static class Candidates {
+        private final SpatialHash.Candidates small = new SpatialHash.Candidates();
+        private final SpatialHash.Candidates large = new SpatialHash.Candidates();
+        private int[] merged = new int[16];
+        private int[] found = merged;
+
+        /**
+         * @return the indices found by the last query into this object
+         */
+        int[] getFound() {
+            return found;
+        }
+    }
+
+    /**
+     * Builds the grid from arrays of positions and radii.
+     *
+     * @param xs x positions of the balls
+     * @param ys y positions of the balls
+     * @param radii of the balls
+     * @param count number of balls in the arrays
+     * @param width of the world
+     * @param height of the world
+     */
+    void build(double[] xs, double[] ys, double[] radii, int count, double width, double height) {
+        ensureCapacity(count);
+        System.arraycopy(xs, 0, smallXs, 0, count);
+        split(smallXs, ys, radii, count, width, height);
+    }
+
+    private void ensureCapacity(int size) {
+        if (smallXs.length < size) {
+            smallXs = new double[size * 2];
+            largeXs = new double[size * 2];
+            ys = new double[size * 2];
+            radii = new double[size * 2];
+            large = new boolean[size * 2];
+        }
+    }
+
+    /**
+     * Moves the balls that are much bigger than average out of smallXs and
+     * into largeXs, then builds both grids.
+     */
+    private void split(double[] xs, double[] ys, double[] radii, int count, double width, double height) {
+        double total = 0;
+        int balls = 0;
+        for (int i = 0; i < count; i++) {
+            if (!Double.isNaN(xs[i]) && radii[i] > 0) {
+                total += radii[i];
+                balls++;
+            }
+        }
+        double threshold = (balls == 0) ? 0 : LARGE_RADIUS_FACTOR * total / balls;
+
+        maxSmallRadius = 0;
+        maxLargeRadius = 0;
+        largeCount = 0;
+        for (int i = 0; i < count; i++) {
+            largeXs[i] = Double.NaN;
+            large[i] = false;
+            if (Double.isNaN(xs[i]) || Double.isNaN(radii[i])) {
+                xs[i] = Double.NaN;
+                continue;
+            }
+            if (radii[i] > threshold) {
+                largeXs[i] = xs[i];
+                xs[i] = Double.NaN;
+                large[i] = true;
+                largeCount++;
+                maxLargeRadius = Math.max(maxLargeRadius, radii[i]);
+            } else {
+                maxSmallRadius = Math.max(maxSmallRadius, radii[i]);
+            }
+        }
+        smallGrid.build(xs, ys, count, width, height, 2 * maxSmallRadius);
+        if (largeCount > 0) {
+            largeGrid.build(largeXs, ys, count, width, height, 2 * maxLargeRadius);
+        }
+    }
+
+    /**
+     * Finds every ball that might be touching a ball at the given position.
+     *
+     * @param x position of the ball
+     * @param y position of the ball
+     * @param radius of the ball
+     * @return the number of candidates, which can be read with
+     *         <code>getFound()</code>
+     */
+    int query(double x, double y, double radius) {
+        return query(x, y, radius, candidates);
+    }
+
+    /**
+     * Same as <code>query(x, y, radius)</code>, but puts the results in
+     * <code>into</code> so that several threads can query the grid at once.
+     */
+    int query(double x, double y, double radius, Candidates into) {
+        int smallFound = smallGrid.query(x, y, radius + maxSmallRadius, into.small);
+        if (largeCount == 0) {
+            into.found = into.small.getFound();
+            return smallFound;
+        }
+        int largeFound = largeGrid.query(x, y, radius + maxLargeRadius, into.large);
+        if (largeFound == 0) {
+            into.found = into.small.getFound();
+            return smallFound;
+        }
+
+        // Merge the two sorted lists
+        int[] small = into.small.getFound();
+        int[] big = into.large.getFound();
+        if (into.merged.length < smallFound + largeFound) {
+            into.merged = new int[(smallFound + largeFound) * 2];
+        }
+        int[] found = into.merged;
+        into.found = found;
+        int s = 0;
+        int b = 0;
+        int size = 0;
+        while (s < smallFound && b < largeFound) {
+            found[size++] = (small[s] < big[b]) ? small[s++] : big[b++];
+        }
+        while (s < smallFound) {
+            found[size++] = small[s++];
+        }
+        while (b < largeFound) {
+            found[size++] = big[b++];
+        }
+        return size;
+    }
+
+    /**
+     * @return the candidates found by the last query
+     */
+    int[] getFound() {
+        return candidates.getFound();
+    }
+}
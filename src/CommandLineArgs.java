@@ -1,5 +1,336 @@
 package edu.nyu.cs.cs101.consumers;
 
+/**
+ * Settings for a run of the game, read from the command line, so that the
+ * size of the game can be changed without recompiling. The Driver and
+ * <code>Simulation</code> both take these.
+ *
+ * <pre>
+ * --balls N          number of balls besides the user's (default 30)
+ * --width W          width of the world (default: the window's, made bigger
+ *                    for more than 30 balls so they are as crowded)
+ * --height H         height of the world (default: the window's, likewise)
+ * --mix a,b,c,d,e,f  how often each kind of ball is made, in the order
+ *                    expandable, evading, consuming, intelligent, master,
+ *                    bouncy (default 1,2,3,3,2,1)
+ * --seed S           seed for making up the balls (default: random)
+ * --headless         run without a window, as fast as possible
+ * --steps N          number of steps to take when headless, or to measure
+ *                    in Simulation (default 100000)
+ * --threads T        threads to step the world with (default 1)
+ * --no-sleep         never let balls with nothing near them sleep (see
+ *                    <code>World.setSleeping()</code>), so that every ball
+ *                    steers every step; slower
+ * --steer-budget N   most computer controlled balls far from the user's ball
+ *                    that look for their closest object in one step (see
+ *                    <code>World.setSteeringBudget()</code>; default 0, no
+ *                    limit)
+ * --detail-distance D  balls this close to the user's ball look every step
+ *                    when the steering budget is limited (default: the
+ *                    window's diagonal, or 1300 when headless)
+ * --tick-rate R      steps per second when playing (default 60)
+ * --skip-frames      when playing, skip drawing some frames while the game
+ *                    can't keep up, so that more time goes to stepping (see
+ *                    <code>FixedTimestep.setSkipFramesWhenBehind()</code>)
+ * --timestep DT      how far balls move per step, in multiples of their
+ *                    speed (default 1); bigger is faster but coarser
+ * --metrics FILE     append timing metrics to this CSV file
+ * --snapshot FILE    when headless, start from the world saved in FILE
+ *                    (see <code>World.save()</code>) instead of making one up
+ * --events FILE      write everything that happens to FILE (see
+ *                    <code>EventLog</code>)
+ * --log-level L      least important messages to print: debug, info, warn,
+ *                    error or off (default info)
+ * </pre>
+ *
+ * @author Katie Kroik
+ */
 public class CommandLineArgs {
+    private int balls = World.NUM_OBJECTS;
+    private boolean ballsGiven = false;
+    // 0 means "use the default"
+    private int width = 0;
+    private int height = 0;
+    private int[] typeMix = World.DEFAULT_TYPE_MIX.clone();
+    private long seed = System.nanoTime();
+    private boolean seedGiven = false;
+    private boolean headless = false;
+    private long steps = 100000;
+    private int threads = 1;
+    private boolean sleeping = true;
+    private int steeringBudget = 0;
+    // Negative means "use the default"
+    private double detailDistance = -1;
+    private double tickRate = 60;
+    private boolean skipFrames = false;
+    private double timestep = 1;
+    private String metricsFile = null;
+    private String snapshotFile = null;
+    private String eventsFile = null;
+    private int logLevel = Log.INFO;
 
+    /**
+     * Reads the settings from the command line. Anything not given keeps its
+     * default.
+     *
+     * @param args the command line
+     * @return the settings
+     * @throws IllegalArgumentException if an argument is not understood
+     */
+    public static CommandLineArgs parse(String[] args) {
+        CommandLineArgs parsed = new CommandLineArgs();
+        for (int i = 0; i < args.length; i++) {
+            String name = args[i];
+            if (name.equals("--headless")) {
+                parsed.headless = true;
+                continue;
+            }
+            if (name.equals("--no-sleep")) {
+                parsed.sleeping = false;
+                continue;
+            }
+            if (name.equals("--skip-frames")) {
+                parsed.skipFrames = true;
+                continue;
+            }
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value for " + name);
+            }
+            String value = args[++i];
+            try {
+                if (name.equals("--balls")) {
+                    parsed.balls = positive(name, Integer.parseInt(value));
+                    parsed.ballsGiven = true;
+                } else if (name.equals("--width")) {
+                    parsed.width = positive(name, Integer.parseInt(value));
+                } else if (name.equals("--height")) {
+                    parsed.height = positive(name, Integer.parseInt(value));
+                } else if (name.equals("--mix")) {
+                    parsed.typeMix = parseMix(value);
+                } else if (name.equals("--seed")) {
+                    parsed.seed = Long.parseLong(value);
+                    parsed.seedGiven = true;
+                } else if (name.equals("--steps")) {
+                    parsed.steps = positive(name, Long.parseLong(value));
+                } else if (name.equals("--threads")) {
+                    parsed.threads = positive(name, Integer.parseInt(value));
+                } else if (name.equals("--steer-budget")) {
+                    parsed.steeringBudget = Integer.parseInt(value);
+                    if (parsed.steeringBudget < 0) {
+                        throw new IllegalArgumentException(name + " must not be negative");
+                    }
+                } else if (name.equals("--detail-distance")) {
+                    parsed.detailDistance = Double.parseDouble(value);
+                    if (!(parsed.detailDistance >= 0)) {
+                        throw new IllegalArgumentException(name + " must not be negative");
+                    }
+                } else if (name.equals("--tick-rate")) {
+                    parsed.tickRate = Double.parseDouble(value);
+                    if (!(parsed.tickRate > 0)) {
+                        throw new IllegalArgumentException(name + " must be more than 0");
+                    }
+                } else if (name.equals("--timestep")) {
+                    parsed.timestep = Double.parseDouble(value);
+                    if (!(parsed.timestep > 0)) {
+                        throw new IllegalArgumentException(name + " must be more than 0");
+                    }
+                } else if (name.equals("--metrics")) {
+                    parsed.metricsFile = value;
+                } else if (name.equals("--snapshot")) {
+                    parsed.snapshotFile = value;
+                } else if (name.equals("--events")) {
+                    parsed.eventsFile = value;
+                } else if (name.equals("--log-level")) {
+                    parsed.logLevel = Log.parseLevel(value);
+                } else {
+                    throw new IllegalArgumentException("Unknown argument " + name);
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Bad value for " + name + ": " + value);
+            }
+        }
+        return parsed;
+    }
+
+    private static int positive(String name, int value) {
+        if (value <= 0) {
+            throw new IllegalArgumentException(name + " must be more than 0");
+        }
+        return value;
+    }
+
+    private static long positive(String name, long value) {
+        if (value <= 0) {
+            throw new IllegalArgumentException(name + " must be more than 0");
+        }
+        return value;
+    }
+
+    static int[] parseMix(String value) {
+        String[] parts = value.split(",");
+        int[] mix = new int[BallType.values().length];
+        if (parts.length != mix.length) {
+            throw new IllegalArgumentException("--mix needs " + mix.length + " numbers");
+        }
+        int total = 0;
+        for (int i = 0; i < mix.length; i++) {
+            mix[i] = Integer.parseInt(parts[i].trim());
+            if (mix[i] < 0) {
+                throw new IllegalArgumentException("--mix can't have negative numbers");
+            }
+            total += mix[i];
+        }
+        if (total == 0) {
+            throw new IllegalArgumentException("--mix needs at least one kind of ball");
+        }
+        return mix;
+    }
+
+    /**
+     * @param program name of the program, and anything it takes before the
+     *        options
+     * @return a description of every argument
+     */
+    public static String usage(String program) {
+        return "Usage: " + program + " [--balls N] [--width W] [--height H] [--mix a,b,c,d,e,f] [--seed S]"
+                + " [--headless] [--steps N] [--threads T] [--no-sleep]"
+                + " [--steer-budget N] [--detail-distance D] [--tick-rate R] [--skip-frames] [--timestep DT]"
+                + " [--metrics FILE] [--snapshot FILE] [--events FILE] [--log-level L]";
+    }
+
+    /**
+     * @return number of balls besides the user's
+     */
+    public int getBalls() {
+        return balls;
+    }
+
+    /**
+     * @param defaultBalls to use if no number of balls was given
+     * @return number of balls besides the user's
+     */
+    public int getBalls(int defaultBalls) {
+        return ballsGiven ? balls : defaultBalls;
+    }
+
+    /**
+     * @param defaultWidth to use if no width was given
+     * @return width of the world
+     */
+    public int getWidth(int defaultWidth) {
+        return (width > 0) ? width : defaultWidth;
+    }
+
+    /**
+     * @param defaultHeight to use if no height was given
+     * @return height of the world
+     */
+    public int getHeight(int defaultHeight) {
+        return (height > 0) ? height : defaultHeight;
+    }
+
+    /**
+     * @return how often each kind of ball is made, by <code>BallType</code>
+     *         ordinal
+     */
+    public int[] getTypeMix() {
+        return typeMix;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * @param defaultSeed to use if no seed was given
+     * @return seed for making up the balls
+     */
+    public long getSeed(long defaultSeed) {
+        return seedGiven ? seed : defaultSeed;
+    }
+
+    public boolean isHeadless() {
+        return headless;
+    }
+
+    public long getSteps() {
+        return steps;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * @return true if balls with nothing near them may sleep
+     */
+    public boolean isSleeping() {
+        return sleeping;
+    }
+
+    /**
+     * @return most far balls that look for their closest object in one
+     *         step, or 0 for no limit
+     */
+    public int getSteeringBudget() {
+        return steeringBudget;
+    }
+
+    /**
+     * @param defaultDistance to use if no distance was given
+     * @return distance from the user's ball within which balls look every
+     *         step
+     */
+    public double getDetailDistance(double defaultDistance) {
+        return (detailDistance >= 0) ? detailDistance : defaultDistance;
+    }
+
+    /**
+     * @return steps per second when playing
+     */
+    public double getTickRate() {
+        return tickRate;
+    }
+
+    /**
+     * @return true to skip drawing frames while the game can't keep up
+     */
+    public boolean isSkippingFrames() {
+        return skipFrames;
+    }
+
+    /**
+     * @return how far balls move per step, in multiples of their speed
+     */
+    public double getTimestep() {
+        return timestep;
+    }
+
+    /**
+     * @return the CSV file to save metrics to, or null
+     */
+    public String getMetricsFile() {
+        return metricsFile;
+    }
+
+    /**
+     * @return the snapshot file to start from, or null to make up a world
+     */
+    public String getSnapshotFile() {
+        return snapshotFile;
+    }
+
+    /**
+     * @return the file to log events to, or null
+     */
+    public String getEventsFile() {
+        return eventsFile;
+    }
+
+    /**
+     * @return least important level of message to print (see <code>Log</code>)
+     */
+    public int getLogLevel() {
+        return logLevel;
+    }
 }
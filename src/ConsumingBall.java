@@ -45,10 +45,16 @@ public class ConsumingBall extends ExpandableBall {
     			
     			// Gets the closest object to the consuming ball
     	        GeometricObject closestObject = super.getClosest(cBall, objects);
-    	        
-    	        // Accelerate towards the closest ball, regardless if bigger or not.
-    	        cBall.accelerate(closestObject.getX(), closestObject.getY());
+    	        ((ConsumingBall) cBall).steer(closestObject);
     		}
     	}
     }
+
+    @Override
+    void steer(GeometricObject closestObject) {
+        if (closestObject == null)
+            return;
+        // Accelerate towards the closest ball, regardless if bigger or not.
+        accelerate(closestObject.getX(), closestObject.getY());
+    }
 }
@@ -0,0 +1,63 @@
+package edu.nyu.cs.cs101.consumers;
+
+import java.util.Arrays;
+
+/**
+ * A list of pairs of balls that touched during a step, by index, in the
+ * order they were found. Finding contacts only reads the balls and fills one
+ * of these; the rules of the game are applied afterwards by going through
+ * the list. The arrays are kept between steps, so once they are big enough
+ * filling the list allocates nothing.
+ *
+ * @author Katie Kroik
+ */
+class ContactBuffer {
+    // Pairs as (ball, other ball), one after the other
+    private int[] pairs = new int[64];
+    private int size = 0;
+
+    /**
+     * Empties the list, keeping its arrays.
+     */
+    void clear() {
+        size = 0;
+    }
+
+    /**
+     * Adds a pair to the end of the list.
+     *
+     * @param ball index of the ball being checked
+     * @param otherBall index of the ball it touched
+     */
+    void add(int ball, int otherBall) {
+        if (2 * size + 2 > pairs.length) {
+            pairs = Arrays.copyOf(pairs, pairs.length * 2);
+        }
+        pairs[2 * size] = ball;
+        pairs[2 * size + 1] = otherBall;
+        size++;
+    }
+
+    /**
+     * @return number of pairs in the list
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * @param n position of the pair in the list
+     * @return index of the ball being checked
+     */
+    int getBall(int n) {
+        return pairs[2 * n];
+    }
+
+    /**
+     * @param n position of the pair in the list
+     * @return index of the ball it touched
+     */
+    int getOtherBall(int n) {
+        return pairs[2 * n + 1];
+    }
+}
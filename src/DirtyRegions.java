@@ -0,0 +1,103 @@
+package edu.nyu.cs.cs101.consumers;
+
+import processing.core.PApplet;
+import processing.core.PImage;
+
+/**
+ * Keeps track of the parts of the screen that were drawn on, so that the next
+ * frame only has to put the background back in those places instead of
+ * drawing the whole background again.
+ *
+ * Every frame, the rectangles that were drawn on during the last frame are
+ * covered back up with the background, and then everything is drawn again at
+ * its new position while the new rectangles are recorded. The time this takes
+ * depends on how many balls there are and how big they are, not on how big
+ * the window is.
+ *
+ * @author Katie Kroik
+ */
+class DirtyRegions {
+    // Extra room around each rectangle for the outline and anti-aliasing
+    private static final int MARGIN = 2;
+
+    private final int width;
+    private final int height;
+
+    // Rectangles drawn on since the last restore(), stored as x, y, width,
+    // height one after another
+    private int[] rects = new int[64];
+    private int count = 0;
+
+    /**
+     * @param width of the screen
+     * @param height of the screen
+     */
+    DirtyRegions(int width, int height) {
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * Forgets everything that was drawn; call after drawing the whole screen.
+     */
+    void clear() {
+        count = 0;
+    }
+
+    /**
+     * Starts a new frame: puts the background back wherever something was
+     * drawn during the last frame.
+     *
+     * @param applet to draw with
+     * @param background the image the screen is covered with
+     */
+    void restore(PApplet applet, PImage background) {
+        for (int i = 0; i < count; i += 4) {
+            int x = rects[i];
+            int y = rects[i + 1];
+            int w = rects[i + 2];
+            int h = rects[i + 3];
+            applet.image(background, x, y, w, h, x, y, x + w, y + h);
+        }
+        count = 0;
+    }
+
+    /**
+     * Records that a circle is about to be drawn.
+     *
+     * @param x of the center
+     * @param y of the center
+     * @param radius of the circle
+     */
+    void addCircle(double x, double y, double radius) {
+        add(x - radius, y - radius, x + radius, y + radius);
+    }
+
+    /**
+     * Records that a rectangle is about to be drawn on.
+     *
+     * @param left edge
+     * @param top edge
+     * @param right edge
+     * @param bottom edge
+     */
+    void add(double left, double top, double right, double bottom) {
+        int x1 = Math.max(0, (int) Math.floor(left) - MARGIN);
+        int y1 = Math.max(0, (int) Math.floor(top) - MARGIN);
+        int x2 = Math.min(width, (int) Math.ceil(right) + MARGIN);
+        int y2 = Math.min(height, (int) Math.ceil(bottom) + MARGIN);
+        if (x2 <= x1 || y2 <= y1) {
+            return;
+        }
+
+        if (count + 4 > rects.length) {
+            int[] bigger = new int[rects.length * 2];
+            System.arraycopy(rects, 0, bigger, 0, count);
+            rects = bigger;
+        }
+        rects[count++] = x1;
+        rects[count++] = y1;
+        rects[count++] = x2 - x1;
+        rects[count++] = y2 - y1;
+    }
+}
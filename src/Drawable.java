@@ -15,4 +15,10 @@ public interface Drawable {
      * Draws this object using the Processing applet associated with it.
      */
     void draw(PApplet applet);
+
+    /**
+     * Draws this object part way between where it was before its last move
+     * (alpha = 0) and where it is now (alpha = 1).
+     */
+    void draw(PApplet applet, float alpha);
 }
@@ -1,10 +1,9 @@
 package edu.nyu.cs.cs101.consumers;
 
-import processing.core.*;
-
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.Random;
+
+import processing.core.*;
 
 import ddf.minim.AudioPlayer;
 import ddf.minim.Minim;
@@ -16,11 +15,32 @@ import ddf.minim.Minim;
  * Ball and the ExpandableBall class are implemented.
  * 
  * Music is provided for the game, as well as for when any ball grows and shrinks,
- * and a spiraling noise is heard when anything touches the MasterBall. 
+ * and a spiraling noise is heard when anything touches the MasterBall. Sound effects
+ * go through a <code>SoundMixer</code>, which plays each one at most once per frame.
+ * 
+ * The background is a Despicable Me Minion holding a Bubble Gun. To keep frames cheap, only
+ * the parts of the background that balls or text were drawn over are drawn again each frame
+ * (see <code>DirtyRegions</code>); pressing d switches to drawing the whole background every frame.
+ * 
+ * The world can be bigger than the window. A <code>Camera</code> follows the user's ball
+ * around it, and only the balls that are in the window are drawn, so drawing takes as
+ * long with a million balls in the world as with thirty.
+ * 
+ * The number of balls, size of the world, mix of ball types, seed, number of threads
+ * and speed of the game can all be set on the command line; see <code>CommandLineArgs</code>.
+ * 
+ * Pressing m shows how long each part of a frame takes (see <code>FrameMetrics</code>); with
+ * --metrics the same numbers are also saved to a CSV file every second.
  * 
- * The background is a Despicable Me Minion holding a Bubble Gun.
+ * The game can be sped up by pressing x and slowed down by pressing z. This changes how
+ * many times per second the world is stepped, not how often it is drawn; see
+ * <code>FixedTimestep</code>.
  * 
- * The frame rate can be changed by pressing x to speed up the game and z to slow down the game.
+ * The game itself lives in a <code>World</code>, which can also be run without a
+ * window by <code>Simulation</code>. The Driver only draws the world, plays sounds
+ * for what happens in it and passes keyboard and mouse input along. Every input is
+ * recorded in an <code>InputLog</code>; pressing r saves it, and Simulation can replay
+ * the game from it exactly.
  * 
  * Class hierarchy is:
  * 
@@ -53,57 +73,70 @@ import ddf.minim.Minim;
  */
 
 @SuppressWarnings("serial")
-public class Driver extends PApplet {
-    private static final int WINDOW_WIDTH = 1024;
-    private static final int WINDOW_HEIGHT = 768;
+public class Driver extends PApplet implements WorldListener {
     private static final int TEXT_SIZE = 20;
     private static final int TEXT_TIMELIMIT = 10000; // in milliseconds
 
-    // Number of shapes to start with
-    private static final int NUM_OBJECTS = 30;
-
-    // Limits for shapes at creation time
-    static final double STARTING_MAX_SPEED = .25;
-    private static final int STARTING_MAX_SIZE = 30;
-
-    // Player shape attributes at start
-    private static final int PLAYER_XPOS = WINDOW_WIDTH / 2;
-    private static final int PLAYER_YPOS = WINDOW_HEIGHT / 2;
-    private static final int PLAYER_SIZE = STARTING_MAX_SIZE;
-    private static final int PLAYER_RED = 0;
-    private static final int PLAYER_GREEN = 0;
-    private static final int PLAYER_BLUE = 0;
-
     // Color constants
     private static final int FILLER = 200;
     private static final int FOREGROUND = 255;
 
-    // Minimum distance a shape can be generated near the user shape
-    private static final double MIN_DISTANCE = 20;
-    
-    // Maximum x value for BouncyBall
-    private static final double MAX_BOUCY_X = WINDOW_WIDTH / 2;
-    private static final double STARTING_BOUNCY_MAX_SPEED = 6;
-    
-    // Frame rate times
-    private static final float FRAME_RATE_FAST = 175;
-    private static final float FRAME_RATE_SLOW = 12;
+    // Simulation speeds, in steps per second
+    private static final double TICK_RATE = 60;
+    private static final double TICK_RATE_FAST = 175;
+    private static final double TICK_RATE_SLOW = 12;
+    // Most steps to take before drawing a frame
+    private static final int MAX_TICKS_PER_FRAME = 10;
 
     // Different instructions to give the user
     private static final String INSTRUCTIONS_START = "Move your ball using the arrow keys or mouse clicks, z to slow down, x to speed up";
     private static final String INSTRUCTIONS_END = "Press spacebar to restart";
     private static final String CONGRATULATIONS = "Congradulations, you have one. Press spacebar to play again.";
 
-    // Generic expandable shapes
-    private static ArrayList<GeometricObject> objects;
-    // User controlled shape
-    private static ExpandableBall userBall;
+    // Where pressing r saves the recording of the game
+    private static final String RECORDING_FILE = "recording.bin";
+
+    // Metrics shown on screen when m is pressed, and how often they change
+    private static final int[] METRICS_SHOWN = { FrameMetrics.FRAME, FrameMetrics.DRAW, FrameMetrics.STEP,
+            FrameMetrics.COLLISIONS, FrameMetrics.STEER, FrameMetrics.MOVE, FrameMetrics.BALLS,
+            FrameMetrics.CONTACTS, FrameMetrics.AWAKE, FrameMetrics.DRAWN };
+    private static final int METRICS_INTERVAL = 1000; // in milliseconds
+    private static final int METRICS_TEXT_SIZE = 12;
+
+    // Settings from the command line (see main())
+    private static CommandLineArgs settings = new CommandLineArgs();
+
+    // The game itself; the Driver only draws it and passes user input along
+    private World world;
+    // The part of the world that is in the window
+    private Camera camera;
+    // Everything the user did, so the game can be replayed by Simulation
+    private InputLog inputLog;
+    // Everything that happened in the game (null unless asked for)
+    private EventLog eventLog;
+    // How long each part of a frame takes
+    private FrameMetrics metrics = new FrameMetrics();
+    private boolean showMetrics = false;
+    private String[] metricsLines = new String[METRICS_SHOWN.length];
+    // Metrics will be saved and shown at this time
+    private int metricsEndTime;
+    // Decides how many times to step the world per frame drawn
+    private FixedTimestep clock = new FixedTimestep(TICK_RATE, MAX_TICKS_PER_FRAME);
+    // Parts of the screen drawn on during the last frame
+    private DirtyRegions dirtyRegions;
+    // True to draw the whole background every frame instead
+    private boolean redrawEverything = false;
+    // True if the whole background has to be drawn on the next frame
+    private boolean backgroundStale = true;
     
     private static Minim minim;
     AudioPlayer backgroundMusic;
-    AudioPlayer whoosh;
-    AudioPlayer spiral;
-    AudioPlayer buzzer;
+    // Sound effects are played through the mixer so that collisions don't
+    // hold up the game
+    private SoundMixer mixer;
+    private int whoosh;
+    private int spiral;
+    private int buzzer;
     
     // text to display to the user
     private String message = INSTRUCTIONS_START;
@@ -119,19 +152,95 @@ public class Driver extends PApplet {
     public void setup() {
     	minim = new Minim(this);
     	backgroundMusic = minim.loadFile("Background.mp3 ", 1024);
-    	whoosh = minim.loadFile("Whoosh.mp3 ", 2048);
-    	spiral = minim.loadFile("Spiral.mp3 ", 1024);
-    	buzzer = minim.loadFile("Buzzer.mp3", 1024);
-    	
-    	backgroundMusic.play();
+    	mixer = new SoundMixer(minim);
+    	whoosh = mixer.addSound("Whoosh.mp3 ", 2048, 4);
+    	spiral = mixer.addSound("Spiral.mp3 ", 1024, 2);
+    	buzzer = mixer.addSound("Buzzer.mp3", 1024, 1);
+    	mixer.start();
     	
     	background = loadImage("Background.jpg");
         size(background.width, background.height);
         background(0, 0, 0);
+        dirtyRegions = new DirtyRegions(width, height);
         
-        createObjects();
+        // The world grows with the number of balls; the window stays the same
+        double scale = World.sizeScale(settings.getBalls());
+        int worldWidth = settings.getWidth((int) (width * scale));
+        int worldHeight = settings.getHeight((int) (height * scale));
+        camera = new Camera(width, height, worldWidth, worldHeight);
+        long seed = settings.getSeed();
+        world = new World(worldWidth, worldHeight, seed);
+        world.setTypeMix(settings.getTypeMix());
+        world.setThreads(settings.getThreads());
+        world.setSleeping(settings.isSleeping());
+        world.setTimestep(settings.getTimestep());
+        // Everything on the screen is steered as well as ever
+        double detailDistance = settings.getDetailDistance(Math.sqrt((double) width * width + height * height));
+        world.setSteeringBudget(settings.getSteeringBudget());
+        world.setDetailDistance(detailDistance);
+        inputLog = new InputLog(seed, worldWidth, worldHeight, settings.getBalls());
+        inputLog.setTypeMix(settings.getTypeMix());
+        inputLog.setTimestep(settings.getTimestep());
+        inputLog.setSteering(settings.getSteeringBudget(), detailDistance);
+        if (settings.getEventsFile() != null) {
+            try {
+                eventLog = new EventLog(world, settings.getEventsFile());
+            } catch (IOException e) {
+                System.err.println("Could not log events: " + e.getMessage());
+            }
+        }
+        if (eventLog != null) {
+            WorldListeners listeners = new WorldListeners();
+            listeners.add(this);
+            listeners.add(eventLog);
+            world.setListener(listeners);
+        } else {
+            world.setListener(this);
+        }
+        world.setMetrics(metrics);
+        // Bigger timesteps need fewer steps for the game to run at the same speed
+        clock.setTickRate(settings.getTickRate() / settings.getTimestep());
+        clock.setSkipFramesWhenBehind(settings.isSkippingFrames());
+        restart();
+    }
+
+    /**
+     * Starts a new game. The sounds, the background and the world itself are
+     * kept; only the balls are created again.
+     */
+    private void restart() {
+        world.createObjects(settings.getBalls());
+        clock.reset();
+        backgroundStale = true;
+        message = INSTRUCTIONS_START;
         textEndTime = millis() + TEXT_TIMELIMIT;
-        
+
+        backgroundMusic.rewind();
+        backgroundMusic.play();
+    }
+
+    /**
+     * Closes the sounds when the sketch is shut down
+     */
+    @Override
+    public void dispose() {
+        if (mixer != null) {
+            mixer.shutdown();
+        }
+        if (eventLog != null) {
+            try {
+                eventLog.close();
+            } catch (IOException e) {
+                System.err.println("Could not log events: " + e.getMessage());
+            }
+        }
+        if (backgroundMusic != null) {
+            backgroundMusic.close();
+        }
+        if (minim != null) {
+            minim.stop();
+        }
+        super.dispose();
     }
 
     /**
@@ -147,6 +256,10 @@ public class Driver extends PApplet {
             textSize(TEXT_SIZE);
             textAlign(CENTER);
             text(message, width / 2, height / 2);
+
+            float textWidth = textWidth(message);
+            dirtyRegions.add(width / 2 - textWidth / 2, height / 2 - textAscent(), width / 2 + textWidth / 2,
+                    height / 2 + textDescent());
         }
     }
 
@@ -155,270 +268,159 @@ public class Driver extends PApplet {
      * re-draw the screen
      */
     public void draw() {
-        // background(BACKGROUND);
-    	image(background, 0, 0);
-        checkForWallCollisions();
-        checkForObjectCollisions();
-        drawObjects();
+        long frameStart = System.nanoTime();
+        int ticks = clock.advance(frameStart);
+        for (int i = 0; i < ticks; i++) {
+            world.step();
+        }
+        inputLog.setLength(clock.getTicks());
+        mixer.flush();
         updateMessage();
+        updateMetrics();
+        if (!clock.shouldDraw()) {
+            metrics.record(FrameMetrics.FRAME, System.nanoTime() - frameStart);
+            return;
+        }
+
+        long drawStart = System.nanoTime();
+        // Cover up the last frame, either completely or only where something
+        // was drawn
+        if (redrawEverything || backgroundStale) {
+            // background(BACKGROUND);
+            image(background, 0, 0);
+            dirtyRegions.clear();
+            backgroundStale = false;
+        } else {
+            dirtyRegions.restore(this, background);
+        }
+        drawObjects(clock.getAlpha());
         displayMessage(message, textEndTime);
+        if (showMetrics) {
+            displayMetrics();
+        }
 
+        long end = System.nanoTime();
+        metrics.record(FrameMetrics.DRAW, end - drawStart);
+        metrics.record(FrameMetrics.FRAME, end - frameStart);
     }
 
     /**
-     * Update the instructions/message to present to the user given different
-     * situations
+     * Every so often, saves the metrics to the CSV file (if there is one) and
+     * updates the lines shown on screen, then starts measuring again.
      */
-    private void updateMessage() {
-        // If the user ball has been consumed
-        if (userBall == null) {
-            message = INSTRUCTIONS_END;
-            textEndTime = millis() + TEXT_TIMELIMIT;
+    private void updateMetrics() {
+        if (millis() < metricsEndTime) {
+            return;
         }
-        if (objects.size() <= 1) {
-        	message = CONGRATULATIONS;
+        metricsEndTime = millis() + METRICS_INTERVAL;
+        if (showMetrics) {
+            for (int i = 0; i < METRICS_SHOWN.length; i++) {
+                metricsLines[i] = metrics.describe(METRICS_SHOWN[i]);
+            }
         }
-    }
-
-    /**
-     * Updates the display with the new position for all objects
-     */
-    private void drawObjects() {
-
-        fill(PLAYER_RED, PLAYER_GREEN, PLAYER_BLUE);
-        stroke(FOREGROUND);
-
-        // For each shape
-        fill(FILLER);
-        for (GeometricObject object : objects) { // skip user-ball
-            // Ignore non-existent items
-            if (object == null)
-                continue;
-
-            if (object instanceof ConsumingBall) {
-                ((ConsumingBall) object).accelerate(objects);
-            } else if (object instanceof EvadingBall) {
-                ((EvadingBall) object).accelerate(objects);
-            } else if (object instanceof IntelligentBall) {
-                ((IntelligentBall) object).accelerate(objects);
+        if (settings.getMetricsFile() != null) {
+            try {
+                metrics.dump(sketchPath(settings.getMetricsFile()), System.currentTimeMillis());
+            } catch (IOException e) {
+                System.err.println("Could not save metrics: " + e.getMessage());
             }
-
-            object.move();
-            object.draw(this);
         }
+        metrics.reset();
     }
 
     /**
-     * Checks for collisions between objects
+     * Displays the latest metrics in the top left corner of the screen
      */
-    void checkForWallCollisions() {
-        // check if any balls have collisions with other objects
-        for (GeometricObject shape : objects) {
-        	// If shape is an instance of BouncyBall, make the y different
-        	if (shape instanceof BouncyBall) {
-        		if ((shape.getX() > MAX_BOUCY_X) && (shape.xSpeed > 0)) {
-        			shape.reverseX();
-        		}
-        	}
-            if (shape == null)
+    private void displayMetrics() {
+        fill(0);
+        textSize(METRICS_TEXT_SIZE);
+        textAlign(LEFT);
+        float widest = 0;
+        for (int i = 0; i < metricsLines.length; i++) {
+            if (metricsLines[i] == null)
                 continue;
-            // Hit the top?
-            if ((shape.getY() < 0) && (shape.ySpeed < 0)) {
-                shape.reverseY();
-            	// Buzz when the userBall hits the top
-            	if (shape.equals(userBall)) {
-            		buzzer.play();
-            	}
-            }
-            // Hit the bottom?
-            if ((shape.getY() > this.height) && (shape.ySpeed > 0)) {
-                shape.reverseY();
-            	// Buzz when the userBall hits the bottom
-            	if (shape == userBall) {
-            		buzzer.play();
-            	}
-            }
-            // Hit the left?
-            if ((shape.getX() < 0) && (shape.xSpeed < 0)) {
-                shape.reverseX();
-            	// Buzz when the userBall hits the left
-            	if (shape == userBall) {
-            		buzzer.play();
-            	}
-            }
-            // Hit the right?
-            if ((shape.getX() > this.width) && (shape.xSpeed > 0)) {
-            	shape.reverseX();
-            	// Buzz when the userBall hits the right
-            	if (shape == userBall) {
-            		buzzer.play();
-            	}
-            }
+            text(metricsLines[i], METRICS_TEXT_SIZE, (i + 2) * METRICS_TEXT_SIZE);
+            widest = Math.max(widest, textWidth(metricsLines[i]));
         }
+        dirtyRegions.add(METRICS_TEXT_SIZE, METRICS_TEXT_SIZE, METRICS_TEXT_SIZE + widest,
+                (metricsLines.length + 2) * METRICS_TEXT_SIZE);
     }
 
     /**
-     * Handles collisions between objects
+     * Update the instructions/message to present to the user given different
+     * situations
      */
-    void checkForObjectCollisions() {
-        // For every ball it will be check against all the other balls
-        for (GeometricObject object : objects) {
-            if (!(object instanceof Expandable)) {
-                continue;
-            }
-            checkForObjectCollision(object, objects);
+    private void updateMessage() {
+        // If the user ball has been consumed
+        if (world.getUserBall() == null) {
+            message = INSTRUCTIONS_END;
+            textEndTime = millis() + TEXT_TIMELIMIT;
         }
-
-        // Remove consumed objects
-        Iterator<GeometricObject> iter = objects.iterator();
-        while (iter.hasNext()) {
-            GeometricObject object = iter.next();
-            if (object.getArea() <= 1) {
-                System.out.println(object);
-                if (object == userBall) {
-                    // End message will display if userball is null
-                    userBall = null;
-                }
-                iter.remove();
-            }
+        if (world.getObjects().size() <= 1) {
+        	message = CONGRATULATIONS;
         }
-
     }
 
     /**
-     * Checks if object collided with any objects. If a collision occurs one of
-     * the objects grows while the other shrinks.
+     * Updates the display with the new position for all objects that are in
+     * the window
      * 
-     * @param object to check for collisions
-     * @param objects to check against
+     * @param alpha how far we are between the last step and the next one
      */
-    private void checkForObjectCollision(GeometricObject object, ArrayList<GeometricObject> objects) {
-        // Check for collisions with all other balls
-        for (GeometricObject otherObject : objects) {
+    private void drawObjects(float alpha) {
+        ExpandableBall userBall = world.getUserBall();
+        if (userBall != null) {
+            camera.follow(userBall.getDrawX(alpha), userBall.getDrawY(alpha));
+        }
+        double left = camera.getLeft();
+        double top = camera.getTop();
 
-            // Currently only checking for collisions between balls
-            if (!(object instanceof ExpandableBall) || !(otherObject instanceof ExpandableBall)) {
-                continue;
-            }
+        stroke(FOREGROUND);
+        pushMatrix();
+        translate((float) -left, (float) -top);
 
-            ExpandableBall ball = (ExpandableBall) object;
-            ExpandableBall otherBall = (ExpandableBall) otherObject;
-
-            // Check to see if this ball collided with another ball
-            if (Ball.isCollision(ball, otherBall)) {
-            	whoosh.play();
-            	if(ball instanceof MasterBall) {
-            		otherBall.radius = 10;
-            		ball.radius = 0;
-            		spiral.play();
-            	}
-                // Shrink/grow the appropriate balls
-                if (ball.getRadius() > otherBall.getRadius()) {
-                	// If the ball is shrinking, play the Whoosh sound
-                	if (otherBall.equals(userBall)) {
-                		whoosh.play();
-                	}
-                    ball.grow();
-                    otherBall.shrink();
-                } else {
-                	if (ball.equals(userBall)) {
-                		whoosh.play();
-                	}
-                    ball.shrink();
-                    otherBall.grow();
-                }
+        // For each shape on the screen
+        fill(FILLER);
+        ArrayList<GeometricObject> objects = world.getObjects();
+        int drawn = camera.findVisible(objects, alpha);
+        int[] visible = camera.getVisible();
+        for (int i = 0; i < drawn; i++) {
+            GeometricObject object = objects.get(visible[i]);
+            if (object instanceof Ball) {
+                dirtyRegions.addCircle(object.getDrawX(alpha) - left, object.getDrawY(alpha) - top,
+                        ((Ball) object).getRadius());
+            } else {
+                // We don't know how much of the screen this covers
+                backgroundStale = true;
             }
+            object.draw(this, alpha);
         }
+        popMatrix();
+        metrics.record(FrameMetrics.DRAWN, drawn);
     }
 
-    /**
-     * Populates the list of objects with one user controlled ball, and
-     * subsequent <code>ExpandableBall</code> objects.
-     */
-    void createObjects() {
-        // Create shapes
-        System.out.println("Creating objects...");
-        objects = new ArrayList<GeometricObject>();
-        
-        // Create the user's ball
-        userBall = new ExpandableBall(PLAYER_XPOS, PLAYER_YPOS);
-        userBall.setRadius(PLAYER_SIZE);
-        userBall.maxSpeed = 5;
-        objects.add(userBall);
-
-        // Create other balls
-        for (int i = 0; i < NUM_OBJECTS; i++) {
-            Ball object = createExpandableBall();
-            objects.add(object);
+    @Override
+    public void wallHit(GeometricObject shape) {
+        // Buzz when the userBall hits a wall
+        if (shape == world.getUserBall()) {
+            mixer.request(buzzer);
         }
-
     }
 
-    /**
-     * Creates a randomized <code>ExpandableBall</code> somewhere on the screen.
-     * The ball will have a random direction and a random speed.
-     * 
-     * @return a newly created randomized <code>ExpandableBall</code>.
-     */
-    ExpandableBall createExpandableBall() {
-        Random rand = new Random();
-
-        // Creating a ball at random location (but not on top of player)
-        int xPos = rand.nextInt(width);
-        int yPos = rand.nextInt(height);
-        while ((Math.abs(xPos - userBall.getX()) < MIN_DISTANCE)
-                || (Math.abs(yPos - userBall.getY()) < MIN_DISTANCE)) {
-            xPos = rand.nextInt(width);
-            yPos = rand.nextInt(height);
-        }
-
-        // Choose a random kind of ball:
-        
-        int ballType = rand.nextInt(12);  // How many types of balls there are
-        ExpandableBall ball;
-        if (ballType == 0) {
-            ball = new ExpandableBall(xPos, yPos);
-        } else if ((ballType >= 1) && (ballType < 3)){
-            ball = new EvadingBall(xPos, yPos);
-        } else if ((ballType >= 3) && (ballType < 6)) {
-            ball = new ConsumingBall(xPos, yPos);
-        } else if ((ballType >= 6 ) && (ballType < 9)) { 
-            ball = new IntelligentBall(xPos, yPos);
-        } else if ((ballType >= 9) && (ballType < 11)){
-            ball = new MasterBall(xPos, yPos);
-        } else {
-        	ball = new BouncyBall(xPos, yPos);
-        }
-      
-        
-        // Random Speed
-        double xSpeed = rand.nextFloat() * STARTING_MAX_SPEED;
-        double ySpeed = rand.nextFloat() * STARTING_MAX_SPEED;
-        ball.setSpeed(xSpeed, ySpeed);
-
-        if (ball instanceof BouncyBall) {
-        	xSpeed = rand.nextFloat() * STARTING_BOUNCY_MAX_SPEED;
-        	ySpeed = rand.nextFloat() * STARTING_BOUNCY_MAX_SPEED;
-        	
-        	ball.setSpeed(xSpeed, ySpeed);
-        	
-        	if (ball.getX() > MAX_BOUCY_X) {
-        		ball.setPos((WINDOW_WIDTH - MAX_BOUCY_X), yPos);
-        	}
+    @Override
+    public void collision(ExpandableBall grower, ExpandableBall shrinker) {
+        mixer.request(whoosh);
+        if ((grower instanceof MasterBall) || (shrinker instanceof MasterBall)) {
+            mixer.request(spiral);
         }
-        
-        // Random direction (gives either a 0 or 1; if 0 - negative direction)
-        if (rand.nextInt(2) == 0)
-            ball.reverseX();
-        if (rand.nextInt(2) == 0)
-            ball.reverseY();
-
-        // Random size
-        float size = rand.nextFloat() * STARTING_MAX_SIZE;
-        ball.setRadius(size);
+    }
 
-        return ball;
+    @Override
+    public void consumed(GeometricObject object) {
+    }
 
+    @Override
+    public void restarted() {
     }
 
     /**
@@ -426,34 +428,94 @@ public class Driver extends PApplet {
      * click
      */
     public void mousePressed() {
-        userBall.accelerate(mouseX, mouseY);
+        accelerateUserBall(camera.toWorldX(mouseX), camera.toWorldY(mouseY));
+    }
+
+    /**
+     * Accelerates the user ball towards a point and records that it did
+     */
+    private void accelerateUserBall(double x, double y) {
+        if (world.getUserBall() == null)
+            return;
+        inputLog.accelerate(clock.getTicks(), x, y);
+        world.accelerateUserBall(x, y);
     }
 
     /**
      * Handle keyboard input
      */
     public void keyPressed() {
-        if (key == CODED) {
-            System.out.println(userBall);
+        ExpandableBall userBall = world.getUserBall();
+        if (key == CODED && userBall != null) {
+            Log.log(Log.DEBUG, "User ball @({}, {}) with velocity ({}, {})", userBall.xPos, userBall.yPos,
+                    userBall.xSpeed, userBall.ySpeed);
             if (keyCode == UP) {
-                userBall.accelerate(userBall.getX(), userBall.getY() - 1);
+                accelerateUserBall(userBall.getX(), userBall.getY() - 1);
             } else if (keyCode == DOWN) {
-                userBall.accelerate(userBall.getX(), userBall.getY() + 1);
+                accelerateUserBall(userBall.getX(), userBall.getY() + 1);
             } else if (keyCode == LEFT) {
-                userBall.accelerate(userBall.getX() - 1, userBall.getY());
+                accelerateUserBall(userBall.getX() - 1, userBall.getY());
             } else if (keyCode == RIGHT) {
-                userBall.accelerate(userBall.getX() + 1, userBall.getY());
+                accelerateUserBall(userBall.getX() + 1, userBall.getY());
             }
         } else if (key == ' ') {
-            setup();
+            inputLog.restart(clock.getTicks());
+            restart();
+        }
+        // Save everything done so far, to be replayed with Simulation
+        if (key == 'r') {
+            String fileName = sketchPath(RECORDING_FILE);
+            try {
+                inputLog.save(fileName);
+                Log.log(Log.INFO, "Saved recording to " + fileName);
+            } catch (IOException e) {
+                System.err.println("Could not save recording: " + e.getMessage());
+            }
+        }
+        // Show or hide how long each part of a frame takes
+        if (key == 'm') {
+            showMetrics = !showMetrics;
+            metricsEndTime = 0;
+            metricsLines = new String[METRICS_SHOWN.length];
+        }
+        // Switch between drawing the whole background and only the parts that changed
+        if (key == 'd') {
+            redrawEverything = !redrawEverything;
+            backgroundStale = true;
         }
         // Slow down the game
         if (key == 'z') {
-        	frameRate(FRAME_RATE_SLOW);
+        	clock.setTickRate(TICK_RATE_SLOW / settings.getTimestep());
         }
         // Speed Up the game
         if (key == 'x') {
-        	frameRate(FRAME_RATE_FAST);
+        	clock.setTickRate(TICK_RATE_FAST / settings.getTimestep());
+        }
+    }
+
+    /**
+     * Starts the game with the settings given on the command line (see
+     * <code>CommandLineArgs</code>). With --headless, the world is run by
+     * <code>Simulation</code> instead, without a window.
+     */
+    public static void main(String[] args) {
+        try {
+            settings = CommandLineArgs.parse(args);
+            Log.setLevel(settings.getLogLevel());
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(CommandLineArgs.usage("Driver"));
+            System.exit(1);
+        }
+        if (settings.isHeadless()) {
+            try {
+                Simulation.run(settings);
+            } catch (IOException e) {
+                System.err.println(e.getMessage());
+                System.exit(1);
+            }
+        } else {
+            PApplet.main(new String[] { Driver.class.getName() });
         }
     }
-}
\ No newline at end of file
+}
@@ -39,10 +39,16 @@ public class EvadingBall extends ExpandableBall  {
     			
     			// Finds closest object to that object
     	        GeometricObject closestObject = super.getClosest(eBall, objects);
-    	        
-    	        // Move away from the closest object
-    	        eBall.decelerate(closestObject.getX(), closestObject.getY());
+    	        ((EvadingBall) eBall).steer(closestObject);
     		}
     	}
     }
+
+    @Override
+    void steer(GeometricObject closestObject) {
+        if (closestObject == null)
+            return;
+        // Move away from the closest object
+        decelerate(closestObject.getX(), closestObject.getY());
+    }
 }
@@ -0,0 +1,338 @@
+package edu.nyu.cs.cs101.consumers;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Writes everything that happens in a game (walls hit, collisions, balls
+ * consumed, restarts) to a binary file, so that a game can be looked into
+ * after it is over.
+ *
+ * Listening to the world only copies a few numbers into a ring buffer that is
+ * made when the log is opened, so logging never allocates and never waits for
+ * the disk. A separate writer thread empties the buffer into the file. If the
+ * game makes events faster than they can be written, the buffer fills up and
+ * new events are dropped (and counted) rather than holding up the game.
+ *
+ * The file is a header (magic number and version, as ints) followed by one
+ * record per event:
+ *
+ * <pre>
+ * step          long   steps the world had taken when it happened
+ * kind          byte   WALL_HIT, COLLISION, CONSUMED or RESTART
+ * type          byte   BallType ordinal of the ball, or -1
+ * other type    byte   BallType ordinal of the other ball, or -1
+ * x, y, radius  floats of the ball
+ * x, y, radius  floats of the other ball
+ * </pre>
+ *
+ * For a collision the ball is the one that grew and the other ball is the one
+ * that shrank. Wall hits and consumed balls have no other ball. A restart has
+ * no balls at all; its x is the number of objects in the new game.
+ *
+ * Running this class reads a log and prints how many of each event it holds,
+ * or with <code>--events</code>, every event.
+ *
+ * @author Katie Kroik
+ */
+public class EventLog implements WorldListener, Runnable {
+    // Kinds of event
+    static final byte WALL_HIT = 0;
+    static final byte COLLISION = 1;
+    static final byte CONSUMED = 2;
+    static final byte RESTART = 3;
+
+    private static final String[] KIND_NAMES = { "wall", "collision", "consumed", "restart" };
+
+    // Written at the start of every file
+    private static final int MAGIC = 0x45564e54;
+    private static final int VERSION = 1;
+
+    // Events the buffer holds (a power of two)
+    private static final int CAPACITY = 1 << 16;
+    private static final int MASK = CAPACITY - 1;
+    // Numbers per event: x, y and radius of two balls
+    private static final int VALUES = 6;
+    // How long the writer sleeps when there is nothing to write
+    private static final long IDLE_NANOS = 5000000L;
+
+    private final World world;
+    private final DataOutputStream out;
+
+    // The ring buffer, one entry per event
+    private final long[] steps = new long[CAPACITY];
+    private final byte[] kinds = new byte[CAPACITY];
+    private final byte[] types = new byte[CAPACITY];
+    private final byte[] otherTypes = new byte[CAPACITY];
+    private final float[] values = new float[CAPACITY * VALUES];
+    // Number of events put in (only changed by the game thread)
+    private final AtomicLong head = new AtomicLong();
+    // Number of events written out (only changed by the writer thread)
+    private final AtomicLong tail = new AtomicLong();
+    // Events that didn't fit (only touched by the game thread)
+    private long dropped = 0;
+
+    private final Thread thread;
+    private volatile boolean running = true;
+    // Set if writing failed; nothing more is written after that
+    private volatile IOException error;
+
+    /**
+     * Creates the log file and starts the writer thread. The log still has to
+     * be given to the world as (one of) its listeners.
+     *
+     * @param world whose events are logged
+     * @param fileName to write to
+     * @throws IOException if the file can't be created
+     */
+    public EventLog(World world, String fileName) throws IOException {
+        this.world = world;
+        out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(fileName)));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        thread = new Thread(this, "EventLog");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void wallHit(GeometricObject shape) {
+        add(WALL_HIT, shape, null);
+    }
+
+    @Override
+    public void collision(ExpandableBall grower, ExpandableBall shrinker) {
+        add(COLLISION, grower, shrinker);
+    }
+
+    @Override
+    public void consumed(GeometricObject object) {
+        add(CONSUMED, object, null);
+    }
+
+    @Override
+    public void restarted() {
+        int i = claim(RESTART);
+        if (i < 0) {
+            return;
+        }
+        types[i] = -1;
+        otherTypes[i] = -1;
+        int v = i * VALUES;
+        values[v] = world.getObjects().size();
+        for (int k = 1; k < VALUES; k++) {
+            values[v + k] = 0;
+        }
+        head.lazySet(head.get() + 1);
+    }
+
+    private void add(byte kind, GeometricObject shape, GeometricObject other) {
+        int i = claim(kind);
+        if (i < 0) {
+            return;
+        }
+        types[i] = typeOf(shape);
+        otherTypes[i] = typeOf(other);
+        put(i * VALUES, shape);
+        put(i * VALUES + 3, other);
+        // Let the writer see the event only once it is filled in
+        head.lazySet(head.get() + 1);
+    }
+
+    /**
+     * @return where in the buffer to put the next event, or -1 if it is full
+     */
+    private int claim(byte kind) {
+        long next = head.get();
+        if (next - tail.get() >= CAPACITY) {
+            dropped++;
+            return -1;
+        }
+        int i = (int) next & MASK;
+        steps[i] = world.getSteps();
+        kinds[i] = kind;
+        return i;
+    }
+
+    private static byte typeOf(GeometricObject shape) {
+        BallType type = (shape == null) ? null : BallType.of(shape);
+        return (type == null) ? -1 : (byte) type.ordinal();
+    }
+
+    private void put(int v, GeometricObject shape) {
+        if (shape == null) {
+            values[v] = 0;
+            values[v + 1] = 0;
+            values[v + 2] = 0;
+            return;
+        }
+        values[v] = (float) shape.xPos;
+        values[v + 1] = (float) shape.yPos;
+        values[v + 2] = (shape instanceof Ball) ? (float) ((Ball) shape).radius : 0;
+    }
+
+    /**
+     * @return number of events that were dropped because the buffer was full
+     */
+    public long getDropped() {
+        return dropped;
+    }
+
+    /**
+     * The writer thread: copies events from the buffer to the file until the
+     * log is closed and everything has been written.
+     */
+    @Override
+    public void run() {
+        try {
+            while (true) {
+                // Check before draining, so nothing put in before close() is missed
+                boolean stopping = !running;
+                long end = head.get();
+                long next = tail.get();
+                if (next == end) {
+                    if (stopping) {
+                        break;
+                    }
+                    LockSupport.parkNanos(this, IDLE_NANOS);
+                    continue;
+                }
+                while (next < end) {
+                    write((int) next & MASK);
+                    next++;
+                    tail.lazySet(next);
+                }
+                out.flush();
+            }
+        } catch (IOException e) {
+            error = e;
+        }
+        try {
+            out.close();
+        } catch (IOException e) {
+            if (error == null) {
+                error = e;
+            }
+        }
+    }
+
+    private void write(int i) throws IOException {
+        out.writeLong(steps[i]);
+        out.writeByte(kinds[i]);
+        out.writeByte(types[i]);
+        out.writeByte(otherTypes[i]);
+        int v = i * VALUES;
+        for (int k = 0; k < VALUES; k++) {
+            out.writeFloat(values[v + k]);
+        }
+    }
+
+    /**
+     * Writes out everything logged so far, then closes the file. Nothing is
+     * logged afterwards.
+     *
+     * @throws IOException if any of the log could not be written
+     */
+    public void close() throws IOException {
+        running = false;
+        LockSupport.unpark(thread);
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    /**
+     * Prints a log written by an <code>EventLog</code>.
+     *
+     * Usage: <code>java edu.nyu.cs.cs101.consumers.EventLog [--events] file</code>
+     */
+    public static void main(String[] args) throws IOException {
+        boolean printEvents = (args.length > 1) && args[0].equals("--events");
+        if (args.length == 0) {
+            System.err.println("Usage: EventLog [--events] file");
+            System.exit(1);
+        }
+        String fileName = args[args.length - 1];
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(fileName)));
+        long[] counts = new long[KIND_NAMES.length];
+        long[] consumed = new long[BallType.values().length];
+        long lastStep = 0;
+        float[] event = new float[VALUES];
+        try {
+            if (in.readInt() != MAGIC) {
+                throw new IOException(fileName + " is not an event log");
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException(fileName + " has unknown version " + version);
+            }
+            while (true) {
+                long step;
+                byte kind;
+                byte type;
+                byte otherType;
+                try {
+                    step = in.readLong();
+                    kind = in.readByte();
+                    type = in.readByte();
+                    otherType = in.readByte();
+                    for (int k = 0; k < VALUES; k++) {
+                        event[k] = in.readFloat();
+                    }
+                } catch (EOFException e) {
+                    // The end of the file (or of what got written before a crash)
+                    break;
+                }
+                if ((kind < 0) || (kind >= KIND_NAMES.length)) {
+                    throw new IOException(fileName + " is damaged");
+                }
+                counts[kind]++;
+                if ((kind == CONSUMED) && (type >= 0) && (type < consumed.length)) {
+                    consumed[type]++;
+                }
+                lastStep = step;
+                if (printEvents) {
+                    System.out.println(describe(step, kind, type, otherType, event));
+                }
+            }
+        } finally {
+            in.close();
+        }
+        System.out.println("steps\t" + lastStep);
+        for (int kind = 0; kind < KIND_NAMES.length; kind++) {
+            System.out.println(KIND_NAMES[kind] + "\t" + counts[kind]);
+        }
+        for (int type = 0; type < consumed.length; type++) {
+            System.out.println("consumed " + BallType.get(type).name().toLowerCase() + "\t" + consumed[type]);
+        }
+    }
+
+    private static String describe(long step, byte kind, byte type, byte otherType, float[] event) {
+        if (kind == RESTART) {
+            return step + " restart with " + (int) event[0] + " objects";
+        }
+        String text = step + " " + KIND_NAMES[kind] + " " + describe(type, event[0], event[1], event[2]);
+        if (kind == COLLISION) {
+            text += " grew, " + describe(otherType, event[3], event[4], event[5]) + " shrank";
+        }
+        return text;
+    }
+
+    private static String describe(byte type, float x, float y, float radius) {
+        String name = (type < 0) ? "shape" : BallType.get(type).name().toLowerCase();
+        return name + " @(" + x + "," + y + ") radius " + radius;
+    }
+}
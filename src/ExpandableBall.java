@@ -9,7 +9,28 @@ package edu.nyu.cs.cs101.consumers;
 public class ExpandableBall extends Ball implements Expandable {
 
     // The speed at which the size change occurs
-    private static final double CHANGE_SPEED = .1;
+    static final double CHANGE_SPEED = .1;
+
+    // Step until which this ball is asleep: too far from everything and every
+    // wall to touch anything, so it just drifts (see World)
+    long sleepUntil = 0;
+    // Where the ball was at the step it fell asleep, to work out where it has
+    // drifted to since
+    double sleepX;
+    double sleepY;
+    long sleptAt;
+    // Step at which to see again whether this ball can go to sleep
+    long nextSleepCheck = 0;
+
+    // True if a player steers this ball rather than the computer
+    boolean player = false;
+    // What the ball last steered relative to, and that object's id then (a
+    // consumed object gets a new id when it is used again), for the steps in
+    // which the ball doesn't look for its closest object
+    private GeometricObject target;
+    private int targetId = -1;
+    // Step from which a ball far from every player may look again
+    long nextThink = 0;
 
     /**
      * Constructor with arguments
@@ -22,13 +43,57 @@ public class ExpandableBall extends Ball implements Expandable {
         this.setColor(175, 0, 255);
     }
 
+    /**
+     * Changes direction based on the ball closest to this one. A plain
+     * ExpandableBall just drifts, so it ignores its neighbours.
+     * 
+     * @param closest the object closest to this ball, or null if there is none
+     */
+    void steer(GeometricObject closest) {
+    }
+
+    /**
+     * Remembers what the ball steered relative to after looking for its
+     * closest object.
+     *
+     * @param closest object found, or null
+     * @param nextThink step from which the ball may look again
+     */
+    void hold(GeometricObject closest, long nextThink) {
+        target = closest;
+        targetId = (closest == null) ? -1 : closest.id;
+        this.nextThink = nextThink;
+    }
+
+    /**
+     * @return what the ball last steered relative to, or null if that is no
+     *         longer in the game
+     */
+    GeometricObject getTarget() {
+        return ((target != null) && (target.id == targetId)) ? target : null;
+    }
+
     @Override
     public void grow() {
-        radius += CHANGE_SPEED;
+        grow(CHANGE_SPEED);
     }
 
     @Override
     public void shrink() {
-        radius -= CHANGE_SPEED;
+        shrink(CHANGE_SPEED);
+    }
+
+    /**
+     * @param amount to add to the radius
+     */
+    void grow(double amount) {
+        radius += amount;
+    }
+
+    /**
+     * @param amount to take off the radius
+     */
+    void shrink(double amount) {
+        radius -= amount;
     }
 }
\ No newline at end of file
@@ -0,0 +1,135 @@
+package edu.nyu.cs.cs101.consumers;
+
+/**
+ * Decides how many times to step the world for each frame that is drawn, so
+ * that the game runs at the same speed no matter how fast or slow frames are
+ * drawn.
+ *
+ * Time passing between frames is added to an accumulator, and the world is
+ * stepped once for every whole tick in it. Whatever is left over (less than a
+ * tick) is used to draw the balls part way between their last two positions,
+ * which keeps the motion smooth when the frame rate and the tick rate don't
+ * line up.
+ *
+ * If the computer can't keep up, at most <code>maxTicksPerFrame</code> ticks
+ * are run per frame and the rest of the backlog is dropped, so the game slows
+ * down instead of grinding to a halt. Optionally, frames can be skipped while
+ * behind so that all the time goes to the simulation.
+ *
+ * @author Katie Kroik
+ */
+public class FixedTimestep {
+    private static final long NANOS_PER_SECOND = 1000000000L;
+
+    // Never draw fewer than one frame in this many while behind
+    private static final int MAX_SKIPPED_FRAMES = 5;
+
+    private long tickNanos;
+    private final int maxTicksPerFrame;
+    private boolean skipFramesWhenBehind = false;
+
+    private long lastTime = -1;
+    private long accumulator = 0;
+    private long ticks = 0;
+    private boolean behind = false;
+    private int skippedFrames = 0;
+
+    /**
+     * @param ticksPerSecond how many times per second to step the world
+     * @param maxTicksPerFrame most steps to take before drawing a frame
+     */
+    public FixedTimestep(double ticksPerSecond, int maxTicksPerFrame) {
+        setTickRate(ticksPerSecond);
+        this.maxTicksPerFrame = maxTicksPerFrame;
+    }
+
+    /**
+     * Changes how fast the game runs, without changing how often it is drawn.
+     *
+     * @param ticksPerSecond how many times per second to step the world
+     */
+    public void setTickRate(double ticksPerSecond) {
+        tickNanos = (long) (NANOS_PER_SECOND / ticksPerSecond);
+    }
+
+    /**
+     * @return how many times per second the world is stepped
+     */
+    public double getTickRate() {
+        return (double) NANOS_PER_SECOND / tickNanos;
+    }
+
+    /**
+     * @param skipFramesWhenBehind true to skip drawing while the simulation
+     *        is falling behind
+     */
+    public void setSkipFramesWhenBehind(boolean skipFramesWhenBehind) {
+        this.skipFramesWhenBehind = skipFramesWhenBehind;
+    }
+
+    /**
+     * Forgets any time that has built up, for example after a restart.
+     */
+    public void reset() {
+        lastTime = -1;
+        accumulator = 0;
+        behind = false;
+        skippedFrames = 0;
+    }
+
+    /**
+     * Call once per frame to find out how many steps to take.
+     *
+     * @param now the current time in nanoseconds (from System.nanoTime())
+     * @return how many times to step the world before drawing
+     */
+    public int advance(long now) {
+        if (lastTime < 0) {
+            lastTime = now;
+        }
+        accumulator += now - lastTime;
+        lastTime = now;
+
+        int due = (int) Math.min(Integer.MAX_VALUE, accumulator / tickNanos);
+        behind = due > maxTicksPerFrame;
+        int steps = Math.min(due, maxTicksPerFrame);
+        if (behind) {
+            // Drop the part of the backlog we are never going to catch up on
+            accumulator = accumulator % tickNanos;
+        } else {
+            accumulator -= steps * tickNanos;
+        }
+        ticks += steps;
+        return steps;
+    }
+
+    /**
+     * Call after <code>advance()</code> to find out whether to draw this
+     * frame.
+     *
+     * @return false if this frame should be skipped to catch up
+     */
+    public boolean shouldDraw() {
+        if (skipFramesWhenBehind && behind && skippedFrames < MAX_SKIPPED_FRAMES) {
+            skippedFrames++;
+            return false;
+        }
+        skippedFrames = 0;
+        return true;
+    }
+
+    /**
+     * @return how far we are between the last step and the next one, from 0
+     *         to 1; used to draw balls between their last two positions
+     */
+    public float getAlpha() {
+        return (float) accumulator / tickNanos;
+    }
+
+    /**
+     * @return the number of steps taken since the clock was created
+     */
+    public long getTicks() {
+        return ticks;
+    }
+}
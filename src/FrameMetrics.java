@@ -0,0 +1,143 @@
+package edu.nyu.cs.cs101.consumers;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/**
+ * Where the time goes: a histogram of how long each phase of a step (and of
+ * drawing a frame) takes, plus how many balls there are and how many pairs of
+ * them touched. The <code>World</code> fills in the step phases when it has
+ * been given one of these; the <code>Driver</code> adds the drawing.
+ *
+ * Every so often the numbers can be appended to a CSV file and started over,
+ * so that a long run shows how things changed over time.
+ *
+ * @author Katie Kroik
+ */
+public class FrameMetrics {
+    // What is measured. Times are in nanoseconds.
+    static final int WALLS = 0;
+    static final int COLLISIONS = 1;
+    static final int REMOVE = 2;
+    static final int STEER = 3;
+    static final int MOVE = 4;
+    static final int STEP = 5;
+    static final int DRAW = 6;
+    static final int FRAME = 7;
+    // These are counts, not times
+    static final int BALLS = 8;
+    static final int CONTACTS = 9;
+    static final int DRAWN = 10;
+    static final int AWAKE = 11;
+
+    private static final String[] NAMES = { "walls", "collisions", "remove", "steer", "move", "step", "draw",
+            "frame", "balls", "contacts", "drawn", "awake" };
+
+    private final Histogram[] histograms = new Histogram[NAMES.length];
+    private boolean headerWritten = false;
+
+    public FrameMetrics() {
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new Histogram();
+        }
+    }
+
+    /**
+     * Adds one measurement.
+     *
+     * @param metric what was measured (WALLS, STEP, BALLS, ...)
+     * @param value the time in nanoseconds, or the count
+     */
+    void record(int metric, long value) {
+        histograms[metric].record(value);
+    }
+
+    /**
+     * @param metric what was measured
+     * @return the histogram for it
+     */
+    Histogram get(int metric) {
+        return histograms[metric];
+    }
+
+    /**
+     * @return the number of different things measured
+     */
+    static int size() {
+        return NAMES.length;
+    }
+
+    /**
+     * @param metric what was measured
+     * @return its name
+     */
+    static String getName(int metric) {
+        return NAMES[metric];
+    }
+
+    /**
+     * @param metric what was measured
+     * @return true if it is a time, false if it is a count
+     */
+    static boolean isTime(int metric) {
+        return metric < BALLS;
+    }
+
+    /**
+     * Describes one metric in a single line, with times in milliseconds.
+     *
+     * @param metric what was measured
+     * @return for example "step p50 0.12 p99 0.40 p99.9 0.95 max 1.20"
+     */
+    String describe(int metric) {
+        Histogram histogram = histograms[metric];
+        return NAMES[metric] + " p50 " + format(metric, histogram.getPercentile(50)) + " p99 "
+                + format(metric, histogram.getPercentile(99)) + " p99.9 "
+                + format(metric, histogram.getPercentile(99.9)) + " max " + format(metric, histogram.getMax());
+    }
+
+    private static String format(int metric, long value) {
+        return isTime(metric) ? String.format("%.2f", value / 1e6) : Long.toString(value);
+    }
+
+    /**
+     * Forgets every measurement.
+     */
+    void reset() {
+        for (Histogram histogram : histograms) {
+            histogram.reset();
+        }
+    }
+
+    /**
+     * Appends one line per metric to a CSV file, then forgets every
+     * measurement. Metrics with nothing recorded are left out.
+     *
+     * @param fileName of the CSV file
+     * @param time when the measurements ended, in milliseconds
+     * @throws IOException if the file can't be written
+     */
+    void dump(String fileName, long time) throws IOException {
+        PrintWriter out = new PrintWriter(new FileWriter(fileName, true));
+        try {
+            if (!headerWritten) {
+                out.println("time_ms,metric,count,mean,p50,p99,p999,max");
+                headerWritten = true;
+            }
+            for (int metric = 0; metric < histograms.length; metric++) {
+                Histogram histogram = histograms[metric];
+                if (histogram.getCount() == 0) {
+                    continue;
+                }
+                out.println(time + "," + NAMES[metric] + "," + histogram.getCount() + ","
+                        + String.format("%.1f", histogram.getMean()) + "," + histogram.getPercentile(50) + ","
+                        + histogram.getPercentile(99) + "," + histogram.getPercentile(99.9) + ","
+                        + histogram.getMax());
+            }
+        } finally {
+            out.close();
+        }
+        reset();
+    }
+}
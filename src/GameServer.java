@@ -0,0 +1,629 @@
+package edu.nyu.cs.cs101.consumers;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+
+/**
+ * Hosts one world for many players over TCP. The server owns the world:
+ * players only send where they want their ball to go (see
+ * <code>Protocol</code>), and the inputs that came in since the last tick are
+ * applied all at once before the world is stepped, so every player sees the
+ * same game.
+ *
+ * Everything runs on one thread. Between ticks the server waits on a
+ * <code>Selector</code> for new players, inputs and room to send; none of
+ * the sockets ever block. After each tick every player is sent the balls
+ * within <code>INTEREST_RADIUS</code> of their own ball (at most
+ * <code>MAX_VISIBLE</code> of them, the closest first), and only what changed
+ * since the last update they got. A player who hasn't taken in the last
+ * update yet gets nothing this tick, and is sent the changes since then once
+ * they catch up, so a slow player can't make the server buffer more and
+ * more.
+ *
+ * A player whose ball is consumed gets a new ball straight away, and the
+ * computer controlled balls are topped up as they are consumed.
+ *
+ * <pre>
+ * --port P        port to listen on (default 4711)
+ * --bots N        also connect N bots (see BotClient) to the server
+ * --seconds S     stop after this many seconds (default: run until killed)
+ * </pre>
+ *
+ * Everything else is read by <code>CommandLineArgs</code>. Of those, the
+ * server uses --balls (computer controlled balls to keep in the world,
+ * default 1000), --mix, --seed, --threads, --no-sleep, --steer-budget (for
+ * balls no player can see), --tick-rate and --log-level.
+ *
+ * Usage: <code>java edu.nyu.cs.cs101.consumers.GameServer [options]</code>
+ *
+ * @author Katie Kroik
+ */
+public class GameServer implements Runnable {
+    static final int DEFAULT_PORT = 4711;
+    private static final int DEFAULT_BALLS = 1000;
+
+    // How far around their own ball players are told about other balls
+    static final double INTEREST_RADIUS = 400;
+    // Most balls in a single update
+    static final int MAX_VISIBLE = 256;
+    // Most inputs a player can send per tick; any more are dropped
+    static final int MAX_INPUTS_PER_TICK = 8;
+    // Most computer controlled balls to add in one tick
+    private static final int REFILL_PER_TICK = 16;
+    // How often to log how the server is doing
+    private static final long REPORT_NANOS = 1000000000L;
+
+    // Biggest message the server sends: a welcome, then an update with every
+    // ball entering and every ball of the last update removed
+    private static final int MAX_MESSAGE = Protocol.HEADER_SIZE + 12 + Protocol.HEADER_SIZE + 8 + 8 + 4
+            + MAX_VISIBLE * Protocol.MAX_BALL_SIZE + 4 + MAX_VISIBLE * 4;
+
+    /**
+     * One connected player.
+     */
+    private static class Client {
+        final SocketChannel channel;
+        final SelectionKey key;
+        final ByteBuffer in = ByteBuffer.allocate(Protocol.MAX_CLIENT_MESSAGE * MAX_INPUTS_PER_TICK);
+        // Ready to be written out; empty when everything has been sent
+        final ByteBuffer out = ByteBuffer.allocate(MAX_MESSAGE);
+        // The player's ball, or null if it was consumed this tick
+        ExpandableBall ball;
+        // True if the player still has to be told about a new ball
+        boolean welcome = true;
+        // Where to accelerate towards, as x, y pairs, since the last tick
+        final float[] inputs = new float[2 * MAX_INPUTS_PER_TICK];
+        int inputCount;
+        // True if sending failed while updates were being sent out; the
+        // player is dropped once everyone has been sent theirs
+        boolean failed;
+
+        // The balls in the last update the player got, sorted by id, as they
+        // were sent
+        int known;
+        int[] knownIds = new int[MAX_VISIBLE];
+        int[] knownXs = new int[MAX_VISIBLE];
+        int[] knownYs = new int[MAX_VISIBLE];
+        short[] knownRadii = new short[MAX_VISIBLE];
+        // The same for the update being built; swapped with the above once sent
+        int[] nextIds = new int[MAX_VISIBLE];
+        int[] nextXs = new int[MAX_VISIBLE];
+        int[] nextYs = new int[MAX_VISIBLE];
+        short[] nextRadii = new short[MAX_VISIBLE];
+
+        Client(SocketChannel channel, SelectionKey key) {
+            this.channel = channel;
+            this.key = key;
+            out.flip();
+        }
+
+        void swapKnown(int count) {
+            int[] ids = knownIds;
+            knownIds = nextIds;
+            nextIds = ids;
+            int[] xs = knownXs;
+            knownXs = nextXs;
+            nextXs = xs;
+            int[] ys = knownYs;
+            knownYs = nextYs;
+            nextYs = ys;
+            short[] radii = knownRadii;
+            knownRadii = nextRadii;
+            nextRadii = radii;
+            known = count;
+        }
+    }
+
+    private final World world;
+    // Computer controlled balls to keep in the world
+    private final int balls;
+    private final long tickNanos;
+    private final ServerSocketChannel serverChannel;
+    private final Selector selector;
+    private final ArrayList<Client> clients = new ArrayList<Client>();
+    private volatile boolean running = true;
+    private long tick = 0;
+
+    // For finding the balls near each player
+    private final SpatialHash grid = new SpatialHash();
+    private final SpatialHash.Candidates candidates = new SpatialHash.Candidates();
+    // Balls picked for an update, as (sort key, index) pairs
+    private long[] picked = new long[MAX_VISIBLE];
+    private final int[] removed = new int[MAX_VISIBLE];
+
+    // How the server is doing since the last report
+    private final Histogram tickTimes = new Histogram();
+    private long bytesSent = 0;
+    private long updatesHeldBack = 0;
+    private long inputsDropped = 0;
+
+    /**
+     * Starts listening for players. Call <code>run()</code> to start the game.
+     *
+     * @param world to host; its balls besides the players' are kept at the
+     *        number it starts with
+     * @param port to listen on
+     * @param tickRate steps per second
+     * @throws IOException if the port can't be listened on
+     */
+    public GameServer(World world, int port, double tickRate) throws IOException {
+        this.world = world;
+        this.balls = world.getObjects().size();
+        this.tickNanos = (long) (1e9 / tickRate);
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.socket().bind(new InetSocketAddress(port));
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+    }
+
+    /**
+     * @return the port the server is listening on
+     */
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    /**
+     * Runs the game until <code>stop()</code> is called.
+     */
+    @Override
+    public void run() {
+        long next = System.nanoTime();
+        long nextReport = next + REPORT_NANOS;
+        try {
+            while (running) {
+                long start = System.nanoTime();
+                tick();
+                long now = System.nanoTime();
+                tickTimes.record(now - start);
+                if (now >= nextReport) {
+                    report(now - nextReport + REPORT_NANOS);
+                    nextReport = now + REPORT_NANOS;
+                }
+                // If a tick ran late, carry on from now rather than rushing
+                // to catch up
+                next = Math.max(next + tickNanos, now);
+                // Deal with the network until the next tick is due
+                while (running) {
+                    long wait = next - System.nanoTime();
+                    if (wait <= 0) {
+                        break;
+                    }
+                    selector.select(Math.max(1, wait / 1000000));
+                    handleNetwork();
+                }
+            }
+        } catch (IOException e) {
+            Log.log(Log.ERROR, "Server stopped: network failure");
+        } finally {
+            for (int i = clients.size() - 1; i >= 0; i--) {
+                close(clients.get(i));
+            }
+            try {
+                selector.close();
+                serverChannel.close();
+            } catch (IOException e) {
+                // Closing anyway
+            }
+        }
+    }
+
+    /**
+     * Makes <code>run()</code> return after the current tick.
+     */
+    public void stop() {
+        running = false;
+        selector.wakeup();
+    }
+
+    /**
+     * Plays one tick: takes in whatever came over the network, applies the
+     * inputs, steps the world and sends every player an update.
+     */
+    private void tick() throws IOException {
+        selector.selectNow();
+        handleNetwork();
+
+        for (int i = 0; i < clients.size(); i++) {
+            Client client = clients.get(i);
+            for (int k = 0; k < client.inputCount; k++) {
+                client.ball.accelerate(client.inputs[2 * k], client.inputs[2 * k + 1]);
+            }
+            client.inputCount = 0;
+        }
+        world.step();
+        tick++;
+
+        // Every consumed ball has to be noticed before any new ball is made,
+        // since new balls can be made from consumed ones
+        for (int i = 0; i < clients.size(); i++) {
+            Client client = clients.get(i);
+            if (client.ball.getArea() <= 1) {
+                client.ball = null;
+            }
+        }
+        for (int i = 0; i < clients.size(); i++) {
+            Client client = clients.get(i);
+            if (client.ball == null) {
+                client.ball = world.addPlayer();
+                client.welcome = true;
+            }
+        }
+        int missing = balls + clients.size() - world.getObjects().size();
+        if (missing > 0) {
+            world.addBalls(Math.min(missing, REFILL_PER_TICK));
+        }
+
+        ArrayList<GeometricObject> objects = world.getObjects();
+        grid.build(objects, world.getWidth(), world.getHeight(), INTEREST_RADIUS / 2);
+        for (int i = clients.size() - 1; i >= 0; i--) {
+            Client client = clients.get(i);
+            if (client.out.hasRemaining()) {
+                // Still sending the last update
+                updatesHeldBack++;
+                continue;
+            }
+            client.out.clear();
+            if (client.welcome) {
+                writeWelcome(client);
+                client.welcome = false;
+            }
+            writeUpdate(client, objects);
+            client.out.flip();
+            // Dropping a player removes their ball, which would leave the
+            // grid pointing at the wrong balls for everyone still to be sent
+            // an update
+            client.failed = !send(client);
+        }
+        for (int i = clients.size() - 1; i >= 0; i--) {
+            Client client = clients.get(i);
+            if (client.failed) {
+                close(client);
+            }
+        }
+    }
+
+    private void handleNetwork() throws IOException {
+        Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+        while (keys.hasNext()) {
+            SelectionKey key = keys.next();
+            keys.remove();
+            if (!key.isValid()) {
+                continue;
+            }
+            if (key.isAcceptable()) {
+                accept();
+                continue;
+            }
+            Client client = (Client) key.attachment();
+            if (key.isReadable()) {
+                receive(client);
+            }
+            if (key.isValid() && key.isWritable() && !send(client)) {
+                close(client);
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = serverChannel.accept()) != null) {
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+            Client client = new Client(channel, key);
+            key.attach(client);
+            client.ball = world.addPlayer();
+            clients.add(client);
+            Log.log(Log.DEBUG, "Player joined with ball {}, {} players", client.ball.id, clients.size());
+        }
+    }
+
+    /**
+     * Reads whatever a player sent and queues up their inputs.
+     */
+    private void receive(Client client) {
+        ByteBuffer in = client.in;
+        try {
+            if (client.channel.read(in) < 0) {
+                close(client);
+                return;
+            }
+        } catch (IOException e) {
+            close(client);
+            return;
+        }
+        in.flip();
+        while (in.remaining() >= 4) {
+            int length = in.getInt(in.position());
+            if ((length < 1) || (length > Protocol.MAX_CLIENT_MESSAGE)) {
+                close(client);
+                return;
+            }
+            if (in.remaining() < 4 + length) {
+                break;
+            }
+            int end = in.position() + 4 + length;
+            in.getInt();
+            byte kind = in.get();
+            if ((kind != Protocol.INPUT) || (length != 9)) {
+                close(client);
+                return;
+            }
+            float x = in.getFloat();
+            float y = in.getFloat();
+            if (client.inputCount < MAX_INPUTS_PER_TICK) {
+                client.inputs[2 * client.inputCount] = x;
+                client.inputs[2 * client.inputCount + 1] = y;
+                client.inputCount++;
+            } else {
+                inputsDropped++;
+            }
+            in.position(end);
+        }
+        in.compact();
+    }
+
+    /**
+     * Writes as much of a player's update as the socket takes right now.
+     *
+     * @return false if the connection failed; the caller has to close it
+     */
+    private boolean send(Client client) {
+        try {
+            bytesSent += client.channel.write(client.out);
+        } catch (IOException e) {
+            return false;
+        }
+        // Only ask to hear about room to write while there is something left
+        client.key.interestOps(client.out.hasRemaining() ? SelectionKey.OP_READ | SelectionKey.OP_WRITE
+                : SelectionKey.OP_READ);
+        return true;
+    }
+
+    private void close(Client client) {
+        client.key.cancel();
+        try {
+            client.channel.close();
+        } catch (IOException e) {
+            // Gone either way
+        }
+        if (client.ball != null) {
+            world.removeBall(client.ball);
+        }
+        clients.remove(client);
+        Log.log(Log.DEBUG, "Player left, {} players", clients.size());
+    }
+
+    private void writeWelcome(Client client) {
+        ByteBuffer out = client.out;
+        out.putInt(1 + 12);
+        out.put(Protocol.WELCOME);
+        out.putInt(client.ball.id);
+        out.putInt(world.getWidth());
+        out.putInt(world.getHeight());
+    }
+
+    /**
+     * Writes an update with the balls near a player's ball, as changes to
+     * the last update the player got.
+     */
+    private void writeUpdate(Client client, ArrayList<GeometricObject> objects) {
+        int visible = pickVisible(client.ball, objects);
+        ByteBuffer out = client.out;
+        int start = out.position();
+        out.putInt(0);
+        out.put(Protocol.UPDATE);
+        out.putLong(tick);
+        out.putLong(System.nanoTime());
+        int countAt = out.position();
+        out.putInt(0);
+
+        // Walk the balls seen now and the balls seen last time, both in id
+        // order, side by side
+        int written = 0;
+        int removedCount = 0;
+        int old = 0;
+        for (int k = 0; k < visible; k++) {
+            Ball ball = (Ball) objects.get((int) picked[k]);
+            int id = ball.id;
+            while ((old < client.known) && (client.knownIds[old] < id)) {
+                removed[removedCount++] = client.knownIds[old++];
+            }
+            int x = Protocol.quantizePosition(ball.xPos);
+            int y = Protocol.quantizePosition(ball.yPos);
+            short radius = Protocol.quantizeRadius(ball.radius);
+            client.nextIds[k] = id;
+            client.nextXs[k] = x;
+            client.nextYs[k] = y;
+            client.nextRadii[k] = radius;
+
+            if ((old < client.known) && (client.knownIds[old] == id)) {
+                int deltaX = x - client.knownXs[old];
+                int deltaY = y - client.knownYs[old];
+                boolean resized = radius != client.knownRadii[old];
+                old++;
+                int flags = resized ? Protocol.RESIZE : 0;
+                if ((deltaX != 0) || (deltaY != 0)) {
+                    boolean small = (deltaX == (byte) deltaX) && (deltaY == (byte) deltaY);
+                    flags |= small ? Protocol.SMALL_MOVE : Protocol.MOVE;
+                }
+                if (flags == 0) {
+                    continue;
+                }
+                out.putInt(id);
+                out.put((byte) flags);
+                if ((flags & Protocol.SMALL_MOVE) != 0) {
+                    out.put((byte) deltaX);
+                    out.put((byte) deltaY);
+                } else if ((flags & Protocol.MOVE) != 0) {
+                    out.putInt(x);
+                    out.putInt(y);
+                }
+                if (resized) {
+                    out.putShort(radius);
+                }
+            } else {
+                out.putInt(id);
+                out.put((byte) Protocol.ENTER);
+                out.put((byte) BallType.of(ball).ordinal());
+                out.putInt(x);
+                out.putInt(y);
+                out.putShort(radius);
+            }
+            written++;
+        }
+        while (old < client.known) {
+            removed[removedCount++] = client.knownIds[old++];
+        }
+        out.putInt(countAt, written);
+        out.putInt(removedCount);
+        for (int k = 0; k < removedCount; k++) {
+            out.putInt(removed[k]);
+        }
+        out.putInt(start, out.position() - start - 4);
+        client.swapKnown(visible);
+    }
+
+    /**
+     * Finds the balls a player should be told about and puts their indices
+     * in <code>picked</code>, in id order.
+     *
+     * @return how many were picked
+     */
+    private int pickVisible(Ball ball, ArrayList<GeometricObject> objects) {
+        int found = grid.query(ball.xPos, ball.yPos, INTEREST_RADIUS, candidates);
+        int[] indices = candidates.getFound();
+        if (picked.length < found) {
+            picked = new long[found * 2];
+        }
+        int count = 0;
+        for (int k = 0; k < found; k++) {
+            GeometricObject object = objects.get(indices[k]);
+            double deltaX = object.xPos - ball.xPos;
+            double deltaY = object.yPos - ball.yPos;
+            double distance = deltaX * deltaX + deltaY * deltaY;
+            if ((object instanceof Ball) && (distance <= INTEREST_RADIUS * INTEREST_RADIUS)) {
+                // Floats that aren't negative sort the same as their bits
+                picked[count++] = ((long) Float.floatToIntBits((float) distance) << 32) | indices[k];
+            }
+        }
+        if (count > MAX_VISIBLE) {
+            // Too many: keep the closest
+            Arrays.sort(picked, 0, count);
+            count = MAX_VISIBLE;
+        }
+        for (int k = 0; k < count; k++) {
+            int index = (int) picked[k];
+            picked[k] = ((long) objects.get(index).id << 32) | index;
+        }
+        Arrays.sort(picked, 0, count);
+        return count;
+    }
+
+    private void report(long nanos) {
+        double seconds = nanos / 1e9;
+        Log.log(Log.INFO, "{} players, {} balls, tick p50 {} us, p99 {} us", clients.size(),
+                world.getObjects().size(), tickTimes.getPercentile(50) / 1000, tickTimes.getPercentile(99) / 1000);
+        Log.log(Log.INFO, "{} KB/s sent, {} updates held back, {} inputs dropped",
+                Math.round(bytesSent / 1024.0 / seconds), updatesHeldBack, inputsDropped);
+        tickTimes.reset();
+        bytesSent = 0;
+        updatesHeldBack = 0;
+        inputsDropped = 0;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int port = DEFAULT_PORT;
+        int bots = 0;
+        double seconds = 0;
+        CommandLineArgs settings;
+        try {
+            // Take out the server's own options and leave the rest to
+            // CommandLineArgs
+            ArrayList<String> rest = new ArrayList<String>();
+            for (int i = 0; i < args.length; i++) {
+                String name = args[i];
+                if (!name.equals("--port") && !name.equals("--bots") && !name.equals("--seconds")) {
+                    rest.add(name);
+                    continue;
+                }
+                if (i + 1 >= args.length) {
+                    throw new IllegalArgumentException("Missing value for " + name);
+                }
+                String value = args[++i];
+                try {
+                    if (name.equals("--port")) {
+                        port = Integer.parseInt(value);
+                        if ((port < 0) || (port > 65535)) {
+                            throw new IllegalArgumentException(name + " must be from 0 to 65535");
+                        }
+                    } else if (name.equals("--bots")) {
+                        bots = Integer.parseInt(value);
+                        if (bots < 0) {
+                            throw new IllegalArgumentException(name + " must not be negative");
+                        }
+                    } else {
+                        seconds = Double.parseDouble(value);
+                        if (!(seconds >= 0)) {
+                            throw new IllegalArgumentException(name + " must not be negative");
+                        }
+                    }
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Bad value for " + name + ": " + value);
+                }
+            }
+            settings = CommandLineArgs.parse(rest.toArray(new String[rest.size()]));
+            Log.setLevel(settings.getLogLevel());
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(CommandLineArgs.usage("GameServer [--port P] [--bots N] [--seconds S]"));
+            System.exit(1);
+            return;
+        }
+
+        int balls = settings.getBalls(DEFAULT_BALLS);
+        long seed = settings.getSeed();
+        World world = Simulation.createEmptyWorld(balls, seed);
+        world.setTypeMix(settings.getTypeMix());
+        world.addBalls(balls);
+        world.setThreads(settings.getThreads());
+        world.setSleeping(settings.isSleeping());
+        // Players are told about everything within the interest radius, so
+        // that is steered as well as ever
+        world.setSteeringBudget(settings.getSteeringBudget());
+        world.setDetailDistance(INTEREST_RADIUS);
+        GameServer server = new GameServer(world, port, settings.getTickRate());
+        Log.log(Log.INFO, "Listening on port {}, {} balls, seed {}", server.getPort(), balls, seed);
+
+        Thread serverThread = new Thread(server, "GameServer");
+        serverThread.start();
+        BotClient botClient = null;
+        Thread botThread = null;
+        if (bots > 0) {
+            botClient = new BotClient("localhost", server.getPort(), bots);
+            botThread = new Thread(botClient, "BotClient");
+            botThread.start();
+        }
+        if (seconds > 0) {
+            Thread.sleep((long) (seconds * 1000));
+            if (botClient != null) {
+                botClient.stop();
+                botThread.join();
+                System.out.println(botClient.describe(true));
+            }
+            server.stop();
+        }
+        serverThread.join();
+        world.setThreads(1);
+    }
+}
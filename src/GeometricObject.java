@@ -2,11 +2,17 @@ package edu.nyu.cs.cs101.consumers;
 
 import java.util.ArrayList;
 
+import processing.core.PApplet;
+
 /**
  * Base class for various other geometric objects.
  */
 public abstract class GeometricObject implements Drawable, Movable {
-    double maxSpeed = Driver.STARTING_MAX_SPEED;
+    double maxSpeed = World.STARTING_MAX_SPEED;
+
+    // Tells this object apart from every other object that has been in its
+    // world, so that it can be referred to over the network (see World)
+    int id;
 
     // Instance variables (unique to each object)
     protected double xPos = 0;
@@ -14,12 +20,16 @@ public abstract class GeometricObject implements Drawable, Movable {
     protected double xSpeed = 0;
     protected double ySpeed = 0;
 
+    // Where this object was before its last move, so that it can be drawn
+    // part way between steps
+    protected double prevXPos = 0;
+    protected double prevYPos = 0;
+
     /**
      * Constructor with arguments
      */
     GeometricObject(int x, int y) {
-        xPos = x;
-        yPos = y;
+        this((double) x, (double) y);
     }
 
     /**
@@ -28,6 +38,8 @@ public abstract class GeometricObject implements Drawable, Movable {
     GeometricObject(double x, double y) {
         xPos = x;
         yPos = y;
+        prevXPos = x;
+        prevYPos = y;
     }
 
     /**
@@ -37,6 +49,8 @@ public abstract class GeometricObject implements Drawable, Movable {
         this(s.xPos, s.yPos);
         xSpeed = s.xSpeed;
         ySpeed = s.ySpeed;
+        prevXPos = s.prevXPos;
+        prevYPos = s.prevYPos;
     }
 
     @Override
@@ -99,7 +113,7 @@ public abstract class GeometricObject implements Drawable, Movable {
         // sqrt of ((change in X squared) + (change in Y squared))
         double deltaX = object1.xPos - object2.xPos;
         double deltaY = object1.yPos - object2.yPos;
-        return Math.sqrt(Math.pow(deltaX, 2) + Math.pow(deltaY, 2));
+        return Math.sqrt(deltaX * deltaX + deltaY * deltaY);
     }
 
     @Override
@@ -133,8 +147,28 @@ public abstract class GeometricObject implements Drawable, Movable {
 
     @Override
     public void move() {
-        xPos += xSpeed;
-        yPos += ySpeed;
+        move(1);
+    }
+
+    /**
+     * Moves for part of a step (or several steps at once).
+     * 
+     * @param timestep how long to move for, in steps
+     */
+    public void move(double timestep) {
+        prevXPos = xPos;
+        prevYPos = yPos;
+        xPos += xSpeed * timestep;
+        yPos += ySpeed * timestep;
+    }
+
+    /**
+     * @return how far this object went in its last move
+     */
+    double getTravel() {
+        double deltaX = xPos - prevXPos;
+        double deltaY = yPos - prevYPos;
+        return Math.sqrt(deltaX * deltaX + deltaY * deltaY);
     }
 
     @Override
@@ -157,6 +191,29 @@ public abstract class GeometricObject implements Drawable, Movable {
     public void setPos(double x, double y) {
         xPos = x;
         yPos = y;
+        prevXPos = x;
+        prevYPos = y;
+    }
+
+    @Override
+    public void draw(PApplet applet) {
+        draw(applet, 1);
+    }
+
+    /**
+     * @param alpha how far between the last position (0) and the current one (1)
+     * @return the x position to draw this object at
+     */
+    double getDrawX(float alpha) {
+        return prevXPos + (xPos - prevXPos) * alpha;
+    }
+
+    /**
+     * @param alpha how far between the last position (0) and the current one (1)
+     * @return the y position to draw this object at
+     */
+    double getDrawY(float alpha) {
+        return prevYPos + (yPos - prevYPos) * alpha;
     }
 
     @Override
@@ -175,6 +232,9 @@ public abstract class GeometricObject implements Drawable, Movable {
         double deltaX = xPos - this.xPos;
         double deltaY = yPos - this.yPos;
         double total = Math.sqrt(deltaX * deltaX + deltaY * deltaY);
+        // No direction to go in if we are already there
+        if (total == 0)
+            return;
         xSpeed += deltaX / total;
         ySpeed += deltaY / total;
         if (xSpeed > maxSpeed)
@@ -192,6 +252,9 @@ public abstract class GeometricObject implements Drawable, Movable {
         double deltaX = xPos - this.xPos;
         double deltaY = yPos - this.yPos;
         double total = Math.sqrt(deltaX * deltaX + deltaY * deltaY);
+        // No direction to go in if we are already there
+        if (total == 0)
+            return;
         xSpeed -= deltaX / total;
         ySpeed -= deltaY / total;
         if (xSpeed > maxSpeed)
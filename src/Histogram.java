@@ -0,0 +1,113 @@
+package edu.nyu.cs.cs101.consumers;
+
+/**
+ * Counts how often values of different sizes occur, so that percentiles can
+ * be read back later. Recording a value is a few instructions and never
+ * allocates, so it is cheap enough to do for every step.
+ *
+ * Values are grouped into buckets whose width grows with the value: every
+ * power of two is split into 32 buckets, so a percentile read back is never
+ * more than about 3% off. Values from 0 up to Long.MAX_VALUE fit.
+ *
+ * @author Katie Kroik
+ */
+public class Histogram {
+    // Each power of two is split into 2^SUB_BUCKET_BITS buckets
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private final long[] counts = new long[(64 - SUB_BUCKET_BITS + 1) * SUB_BUCKETS];
+    private long count = 0;
+    private long max = 0;
+    private long total = 0;
+
+    /**
+     * Adds one value.
+     *
+     * @param value to add (negative values count as 0)
+     */
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        counts[bucket(value)]++;
+        count++;
+        total += value;
+        if (value > max) {
+            max = value;
+        }
+    }
+
+    private static int bucket(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * @return the biggest value in a bucket
+     */
+    private static long highestValue(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long sub = bucket % SUB_BUCKETS;
+        return ((SUB_BUCKETS + sub + 1) << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+
+    /**
+     * @param percentile from 0 to 100
+     * @return a value that about this percent of the values are at or below
+     */
+    public long getPercentile(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(count * percentile / 100));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(max, highestValue(i));
+            }
+        }
+        return max;
+    }
+
+    /**
+     * @return the number of values added
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return the biggest value added
+     */
+    public long getMax() {
+        return max;
+    }
+
+    /**
+     * @return the average of the values added
+     */
+    public double getMean() {
+        return (count == 0) ? 0 : (double) total / count;
+    }
+
+    /**
+     * Forgets every value.
+     */
+    public void reset() {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = 0;
+        }
+        count = 0;
+        max = 0;
+        total = 0;
+    }
+}
@@ -0,0 +1,282 @@
+package edu.nyu.cs.cs101.consumers;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * A recording of a game: the seed the world was made with, and everything the
+ * user did, each stamped with the step it happened before. Playing it back
+ * into a world made with the same seed repeats the game exactly, without a
+ * window and as fast as the computer can go, which gives us the same workload
+ * every time we measure the engine.
+ *
+ * The user can only do two things: accelerate their ball towards a point
+ * (arrow keys and mouse clicks both come down to this) and restart the game.
+ *
+ * @author Katie Kroik
+ */
+public class InputLog {
+    // Kinds of input
+    static final byte ACCELERATE = 0;
+    static final byte RESTART = 1;
+
+    // Written at the start of every file
+    private static final int MAGIC = 0x42414c4c;
+    private static final int VERSION = 4;
+
+    private final long seed;
+    private final int width;
+    private final int height;
+    private final int balls;
+    private int[] typeMix = World.DEFAULT_TYPE_MIX;
+    private double timestep = 1;
+    private int steeringBudget = 0;
+    private double detailDistance = World.DEFAULT_DETAIL_DISTANCE;
+
+    // The inputs, in the order they happened
+    private long[] ticks = new long[64];
+    private byte[] types = new byte[64];
+    private double[] xs = new double[64];
+    private double[] ys = new double[64];
+    private int count = 0;
+    // Steps taken by the end of the recording
+    private long length = 0;
+
+    /**
+     * Starts an empty recording of a game.
+     *
+     * @param seed the world was made with
+     * @param width of the world
+     * @param height of the world
+     * @param balls created at the start of each game (besides the user's)
+     */
+    public InputLog(long seed, int width, int height, int balls) {
+        this.seed = seed;
+        this.width = width;
+        this.height = height;
+        this.balls = balls;
+    }
+
+    /**
+     * @param typeMix how often each kind of ball was made (see
+     *        <code>World.setTypeMix()</code>)
+     */
+    public void setTypeMix(int[] typeMix) {
+        this.typeMix = typeMix.clone();
+    }
+
+    /**
+     * @param timestep the world was stepped with (see
+     *        <code>World.setTimestep()</code>)
+     */
+    public void setTimestep(double timestep) {
+        this.timestep = timestep;
+    }
+
+    /**
+     * @param steeringBudget the world was stepped with (see
+     *        <code>World.setSteeringBudget()</code>)
+     * @param detailDistance the world was stepped with (see
+     *        <code>World.setDetailDistance()</code>)
+     */
+    public void setSteering(int steeringBudget, double detailDistance) {
+        this.steeringBudget = steeringBudget;
+        this.detailDistance = detailDistance;
+    }
+
+    /**
+     * Records the user ball being accelerated towards a point.
+     *
+     * @param tick number of steps taken before this happened
+     * @param x to accelerate towards
+     * @param y to accelerate towards
+     */
+    public void accelerate(long tick, double x, double y) {
+        add(tick, ACCELERATE, x, y);
+    }
+
+    /**
+     * Records the game being restarted.
+     *
+     * @param tick number of steps taken before this happened
+     */
+    public void restart(long tick) {
+        add(tick, RESTART, 0, 0);
+    }
+
+    /**
+     * Records how many steps have been taken so far, so that a replay knows
+     * where to stop.
+     *
+     * @param tick number of steps taken
+     */
+    public void setLength(long tick) {
+        length = Math.max(length, tick);
+    }
+
+    private void add(long tick, byte type, double x, double y) {
+        if (count == ticks.length) {
+            int size = count * 2;
+            long[] newTicks = new long[size];
+            byte[] newTypes = new byte[size];
+            double[] newXs = new double[size];
+            double[] newYs = new double[size];
+            System.arraycopy(ticks, 0, newTicks, 0, count);
+            System.arraycopy(types, 0, newTypes, 0, count);
+            System.arraycopy(xs, 0, newXs, 0, count);
+            System.arraycopy(ys, 0, newYs, 0, count);
+            ticks = newTicks;
+            types = newTypes;
+            xs = newXs;
+            ys = newYs;
+        }
+        ticks[count] = tick;
+        types[count] = type;
+        xs[count] = x;
+        ys[count] = y;
+        count++;
+        setLength(tick);
+    }
+
+    /**
+     * @return the number of inputs recorded
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * @return the number of steps in the recording
+     */
+    public long getLength() {
+        return length;
+    }
+
+    /**
+     * Creates a world in the same state the recorded game started in.
+     *
+     * @return the new world
+     */
+    public World createWorld() {
+        World world = new World(width, height, seed);
+        world.setTypeMix(typeMix);
+        world.setTimestep(timestep);
+        world.setSteeringBudget(steeringBudget);
+        world.setDetailDistance(detailDistance);
+        world.createObjects(balls);
+        return world;
+    }
+
+    /**
+     * Plays the recorded inputs into a world made by
+     * <code>createWorld()</code>, stepping it in between.
+     *
+     * @param world to play into
+     * @param steps number of steps to take
+     */
+    public void replay(World world, long steps) {
+        int next = 0;
+        for (long tick = 0; tick < steps; tick++) {
+            while (next < count && ticks[next] <= tick) {
+                if (types[next] == RESTART) {
+                    world.createObjects(balls);
+                } else {
+                    world.accelerateUserBall(xs[next], ys[next]);
+                }
+                next++;
+            }
+            world.step();
+        }
+    }
+
+    /**
+     * Writes the recording to a file.
+     *
+     * @param fileName to write to
+     * @throws IOException if the file can't be written
+     */
+    public void save(String fileName) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(fileName)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(seed);
+            out.writeInt(width);
+            out.writeInt(height);
+            out.writeInt(balls);
+            out.writeInt(typeMix.length);
+            for (int weight : typeMix) {
+                out.writeInt(weight);
+            }
+            out.writeDouble(timestep);
+            out.writeInt(steeringBudget);
+            out.writeDouble(detailDistance);
+            out.writeLong(length);
+            out.writeInt(count);
+            for (int i = 0; i < count; i++) {
+                out.writeLong(ticks[i]);
+                out.writeByte(types[i]);
+                out.writeDouble(xs[i]);
+                out.writeDouble(ys[i]);
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Reads a recording written by <code>save()</code>.
+     *
+     * @param fileName to read from
+     * @return the recording
+     * @throws IOException if the file can't be read or isn't a recording
+     */
+    public static InputLog load(String fileName) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(fileName)));
+        try {
+            if (in.readInt() != MAGIC) {
+                throw new IOException(fileName + " is not a recording");
+            }
+            int version = in.readInt();
+            if (version < 1 || version > VERSION) {
+                throw new IOException(fileName + " has unknown version " + version);
+            }
+            InputLog log = new InputLog(in.readLong(), in.readInt(), in.readInt(), in.readInt());
+            if (version >= 2) {
+                // Version 1 recordings always used the default mix
+                int[] typeMix = new int[in.readInt()];
+                for (int i = 0; i < typeMix.length; i++) {
+                    typeMix[i] = in.readInt();
+                }
+                log.setTypeMix(typeMix);
+            }
+            if (version >= 3) {
+                // Older recordings always used a timestep of 1
+                log.setTimestep(in.readDouble());
+            }
+            if (version >= 4) {
+                // Older recordings always steered every ball every step
+                int steeringBudget = in.readInt();
+                log.setSteering(steeringBudget, in.readDouble());
+            }
+            long length = in.readLong();
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                long tick = in.readLong();
+                byte type = in.readByte();
+                double x = in.readDouble();
+                double y = in.readDouble();
+                log.add(tick, type, x, y);
+            }
+            log.setLength(length);
+            return log;
+        } finally {
+            in.close();
+        }
+    }
+}
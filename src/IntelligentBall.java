@@ -42,15 +42,20 @@ public class IntelligentBall extends ExpandableBall {
     		if (iBall instanceof IntelligentBall){
     			// Finds the closest object
     	        GeometricObject closestObject = super.getClosest(iBall, objects);
-    	        
-    	        if (closestObject.getArea() >= iBall.getArea()) {
-        	        // Move away from the closest object, since it is bigger
-    	        	iBall.decelerate(closestObject.getX(), closestObject.getY());
-    	        }
-    	        else if (closestObject.getArea() < iBall.getArea()) {
-    	        	iBall.accelerate(closestObject.getX(), closestObject.getY());
-    	        }
+    	        ((IntelligentBall) iBall).steer(closestObject);
     		}
     	}
     }
+
+    @Override
+    void steer(GeometricObject closestObject) {
+        if (closestObject == null)
+            return;
+        if (closestObject.getArea() >= getArea()) {
+            // Move away from the closest object, since it is bigger
+            decelerate(closestObject.getX(), closestObject.getY());
+        } else {
+            accelerate(closestObject.getX(), closestObject.getY());
+        }
+    }
 }
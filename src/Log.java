@@ -0,0 +1,262 @@
+package edu.nyu.cs.cs101.consumers;
+
+import java.io.PrintStream;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Prints messages about what the game is doing without ever making the game
+ * wait. Printing straight to the console holds a lock and blocks whenever the
+ * console (or whatever the output is piped to) is slow, which shows up as
+ * stutter. Here a message only goes into a ring buffer of fixed size, and a
+ * background thread does the formatting and printing.
+ *
+ * Messages are constant strings with up to four numbers, which are put in
+ * place of the <code>{}</code>s in the message when it is printed:
+ *
+ * <pre>
+ * Log.log(Log.DEBUG, "Ball @({}, {}) was consumed", x, y);
+ * </pre>
+ *
+ * so logging allocates nothing. Messages below the current level are ignored
+ * straight away. If the buffer is full, the message is dropped and counted
+ * instead of waiting for room; the number dropped is printed once there is
+ * room again. Any thread can log.
+ *
+ * @author Katie Kroik
+ */
+public class Log implements Runnable {
+    // Levels, from the most to the least chatty
+    public static final int DEBUG = 0;
+    public static final int INFO = 1;
+    public static final int WARN = 2;
+    public static final int ERROR = 3;
+    // Use as the level to print nothing
+    public static final int OFF = 4;
+
+    private static final String[] LEVEL_NAMES = { "DEBUG", "INFO", "WARN", "ERROR", "OFF" };
+
+    // Messages the buffer holds (a power of two)
+    private static final int CAPACITY = 1 << 12;
+    private static final int MASK = CAPACITY - 1;
+    // Most numbers a message can have
+    private static final int MAX_ARGS = 4;
+    // How long the printing thread sleeps when there is nothing to print
+    private static final long IDLE_NANOS = 10000000L;
+    // Longest to wait for the last messages to be printed when exiting
+    private static final long EXIT_WAIT_MILLIS = 1000;
+
+    private static volatile int level = INFO;
+
+    // The ring buffer. The slot for message n is free to fill when its
+    // sequence is n, and ready to print when its sequence is n + 1.
+    private static final AtomicLongArray sequences = new AtomicLongArray(CAPACITY);
+    private static final long[] times = new long[CAPACITY];
+    private static final int[] levels = new int[CAPACITY];
+    private static final String[] messages = new String[CAPACITY];
+    private static final int[] argCounts = new int[CAPACITY];
+    private static final double[] args = new double[CAPACITY * MAX_ARGS];
+    // Number of messages put in so far
+    private static final AtomicLong head = new AtomicLong();
+    // Messages that didn't fit
+    private static final AtomicLong dropped = new AtomicLong();
+
+    private static final long startTime = System.nanoTime();
+    private static final PrintStream output = System.out;
+    private static final Thread thread;
+    private static volatile boolean running = true;
+
+    // Number of messages printed so far (only touched by the printing thread)
+    private long tail = 0;
+
+    static {
+        for (int i = 0; i < CAPACITY; i++) {
+            sequences.set(i, i);
+        }
+        thread = new Thread(new Log(), "Log");
+        thread.setDaemon(true);
+        thread.start();
+        // Print whatever is left when the program exits
+        Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+            @Override
+            public void run() {
+                running = false;
+                LockSupport.unpark(thread);
+                try {
+                    thread.join(EXIT_WAIT_MILLIS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }, "Log shutdown"));
+    }
+
+    private Log() {
+    }
+
+    /**
+     * @param newLevel lowest level of message to print (OFF for none)
+     */
+    public static void setLevel(int newLevel) {
+        if ((newLevel < DEBUG) || (newLevel > OFF)) {
+            throw new IllegalArgumentException("Unknown log level " + newLevel);
+        }
+        level = newLevel;
+    }
+
+    public static int getLevel() {
+        return level;
+    }
+
+    /**
+     * @param name of a level, such as "debug" (any case)
+     * @return the level
+     * @throws IllegalArgumentException if there is no such level
+     */
+    public static int parseLevel(String name) {
+        for (int i = 0; i < LEVEL_NAMES.length; i++) {
+            if (LEVEL_NAMES[i].equalsIgnoreCase(name)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Unknown log level " + name);
+    }
+
+    /**
+     * @param messageLevel of a message
+     * @return true if a message of that level would be printed
+     */
+    public static boolean isEnabled(int messageLevel) {
+        return messageLevel >= level;
+    }
+
+    public static void log(int messageLevel, String message) {
+        if (messageLevel >= level) {
+            add(messageLevel, message, 0, 0, 0, 0, 0);
+        }
+    }
+
+    public static void log(int messageLevel, String message, double a) {
+        if (messageLevel >= level) {
+            add(messageLevel, message, 1, a, 0, 0, 0);
+        }
+    }
+
+    public static void log(int messageLevel, String message, double a, double b) {
+        if (messageLevel >= level) {
+            add(messageLevel, message, 2, a, b, 0, 0);
+        }
+    }
+
+    public static void log(int messageLevel, String message, double a, double b, double c) {
+        if (messageLevel >= level) {
+            add(messageLevel, message, 3, a, b, c, 0);
+        }
+    }
+
+    public static void log(int messageLevel, String message, double a, double b, double c, double d) {
+        if (messageLevel >= level) {
+            add(messageLevel, message, 4, a, b, c, d);
+        }
+    }
+
+    private static void add(int messageLevel, String message, int argCount, double a, double b, double c,
+            double d) {
+        long position;
+        int i;
+        while (true) {
+            position = head.get();
+            i = (int) position & MASK;
+            long sequence = sequences.get(i);
+            if (sequence < position) {
+                // The oldest message hasn't been printed yet, so there is no room
+                dropped.incrementAndGet();
+                return;
+            }
+            if ((sequence == position) && head.compareAndSet(position, position + 1)) {
+                break;
+            }
+            // Another thread took this slot first; try the next one
+        }
+        times[i] = System.nanoTime();
+        levels[i] = messageLevel;
+        messages[i] = message;
+        argCounts[i] = argCount;
+        int arg = i * MAX_ARGS;
+        args[arg] = a;
+        args[arg + 1] = b;
+        args[arg + 2] = c;
+        args[arg + 3] = d;
+        // Let the printing thread see the message only once it is filled in
+        sequences.lazySet(i, position + 1);
+    }
+
+    /**
+     * @return number of messages dropped so far because the buffer was full
+     *         (since the last time the printing thread reported them)
+     */
+    public static long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * The printing thread: prints messages as they come in until the program
+     * exits.
+     */
+    @Override
+    public void run() {
+        StringBuilder line = new StringBuilder();
+        while (true) {
+            // Check before printing, so nothing logged before exiting is missed
+            boolean stopping = !running;
+            int printed = 0;
+            while (true) {
+                int i = (int) tail & MASK;
+                if (sequences.get(i) != tail + 1) {
+                    break;
+                }
+                format(line, i);
+                messages[i] = null;
+                sequences.lazySet(i, tail + CAPACITY);
+                tail++;
+                printed++;
+                output.println(line);
+            }
+            long lost = dropped.getAndSet(0);
+            if (lost > 0) {
+                output.println(lost + " log messages dropped");
+            }
+            if ((printed > 0) || (lost > 0)) {
+                output.flush();
+            } else if (stopping) {
+                break;
+            } else {
+                LockSupport.parkNanos(this, IDLE_NANOS);
+            }
+        }
+    }
+
+    private static void format(StringBuilder line, int i) {
+        line.setLength(0);
+        line.append((times[i] - startTime) / 1000000).append(" ms ").append(LEVEL_NAMES[levels[i]]).append(' ');
+        String message = messages[i];
+        int arg = 0;
+        int from = 0;
+        while (true) {
+            int to = message.indexOf("{}", from);
+            if ((to < 0) || (arg == argCounts[i])) {
+                line.append(message, from, message.length());
+                return;
+            }
+            line.append(message, from, to);
+            double value = args[i * MAX_ARGS + arg++];
+            if ((value == Math.rint(value)) && (Math.abs(value) < 1e15)) {
+                line.append((long) value);
+            } else {
+                line.append(value);
+            }
+            from = to + 2;
+        }
+    }
+}
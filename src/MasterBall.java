@@ -25,15 +25,17 @@ public class MasterBall extends ExpandableBall {
     		if (mBall instanceof MasterBall){
     			// Finds the closest object
     	        GeometricObject closestObject = super.getClosest(mBall, objects); 
-    	        
-    	        // If the closestObject is larger
-    	        if (closestObject.getArea() > mBall.getArea()) {
-    	        	
-        	        // Move towards the larger object
-    	        	mBall.accelerate(closestObject.getX(), closestObject.getY());
-
-    	        }
+    	        ((MasterBall) mBall).steer(closestObject);
     		}
     	}
     }
+
+    @Override
+    void steer(GeometricObject closestObject) {
+        // If the closestObject is larger
+        if ((closestObject != null) && (closestObject.getArea() > getArea())) {
+            // Move towards the larger object
+            accelerate(closestObject.getX(), closestObject.getY());
+        }
+    }
 }
@@ -0,0 +1,275 @@
+package edu.nyu.cs.cs101.consumers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Runs the expensive parts of a <code>World</code> step on a
+ * <code>ForkJoinPool</code> and gets exactly the same result, down to the last
+ * bit, as stepping the world on one thread.
+ *
+ * Steering and moving are easy: every ball only changes its own speed or
+ * position, so the balls are simply split into chunks.
+ *
+ * Collisions are split into two stages. Finding which balls touched only
+ * reads the balls, so the balls are split into chunks of a fixed size and
+ * each chunk's contacts are found on any thread, into a buffer of its own.
+ * Applying the rules (which changes sizes, and tells the listener) is then
+ * done on the calling thread, going through the chunks in order, which is the
+ * same order the single threaded pass finds the contacts in.
+ *
+ * Every phase uses the same chunks, and each chunk has a task of its own that
+ * is reused every step. The calling thread does the first chunk itself and
+ * waits for the others on a plain monitor rather than in
+ * <code>ForkJoinPool.invoke()</code>, which allocates whenever it has to wait
+ * on newer JVMs. That way stepping allocates nothing.
+ *
+ * @author Katie Kroik
+ */
+class ParallelStep {
+    // Smallest number of objects worth handing to another thread. This is
+    // the size of the chunks every phase is split into.
+    private static final int MIN_CHUNK = 2048;
+
+    // What a ChunkTask should do with its chunk of objects
+    private static final int CONTACTS = 0;
+    private static final int STEER = 1;
+    private static final int MOVE = 2;
+
+    private final World world;
+    private final ForkJoinPool pool;
+    private final CollisionGrid collisionGrid = new CollisionGrid();
+    private final SpatialHash grid = new SpatialHash();
+
+    // Contacts found in each chunk, and room for each chunk's grid queries
+    private ContactBuffer[] chunkContacts = new ContactBuffer[0];
+    private CollisionGrid.Candidates[] chunkCandidates = new CollisionGrid.Candidates[0];
+    // The task for each chunk
+    private ChunkTask[] chunkTasks = new ChunkTask[0];
+    // Chunks of the current phase still running on the pool (guarded by this)
+    private int pending;
+    // The first thing that went wrong in one of them (guarded by this)
+    private Throwable failure;
+
+    /**
+     * @param world to step
+     * @param threads number of threads to use
+     */
+    ParallelStep(World world, int threads) {
+        this.world = world;
+        this.pool = new ForkJoinPool(threads);
+    }
+
+    /**
+     * Stops the threads.
+     */
+    void shutdown() {
+        pool.shutdown();
+    }
+
+    /**
+     * Parallel version of <code>World.checkForObjectCollisions()</code>.
+     *
+     * @return the number of pairs of balls that touched
+     */
+    int checkForObjectCollisions() {
+        int chunks = chunks(world.getObjects().size());
+        world.prepareContacts(collisionGrid);
+        do {
+            run(CONTACTS, chunks);
+        } while (world.checkWokeSleepers());
+
+        int contacts = 0;
+        for (int c = 0; c < chunks; c++) {
+            contacts += world.resolveContacts(chunkContacts[c]);
+        }
+        return contacts;
+    }
+
+    /**
+     * Parallel version of <code>World.steerObjects()</code>.
+     */
+    void steerObjects() {
+        ArrayList<GeometricObject> objects = world.getObjects();
+        int size = Math.max(1, objects.size());
+        grid.build(objects, world.getWidth(), world.getHeight(),
+                Math.sqrt((double) world.getWidth() * world.getHeight() / size));
+        world.planSteering(grid);
+        run(STEER, chunks(objects.size()));
+    }
+
+    /**
+     * Parallel version of <code>World.moveObjects()</code>. Objects that move
+     * in several pieces can hit walls on the way, so they are moved
+     * afterwards on this thread, in order, to tell the listener about the
+     * hits in the same order every time.
+     */
+    void moveObjects() {
+        ArrayList<GeometricObject> objects = world.getObjects();
+        run(MOVE, chunks(objects.size()));
+        for (int i = 0; i < objects.size(); i++) {
+            GeometricObject object = objects.get(i);
+            if ((object != null) && !world.isAsleep(object) && world.needsSubsteps(object)) {
+                world.moveObject(object);
+            }
+        }
+    }
+
+    /**
+     * Makes sure there is a task, a contact buffer and room for grid queries
+     * for every chunk of <code>size</code> objects.
+     *
+     * @return the number of chunks
+     */
+    private int chunks(int size) {
+        int chunks = (size + MIN_CHUNK - 1) / MIN_CHUNK;
+        if (chunkTasks.length < chunks) {
+            int oldLength = chunkTasks.length;
+            chunkTasks = Arrays.copyOf(chunkTasks, chunks);
+            chunkContacts = Arrays.copyOf(chunkContacts, chunks);
+            chunkCandidates = Arrays.copyOf(chunkCandidates, chunks);
+            for (int c = oldLength; c < chunks; c++) {
+                chunkTasks[c] = new ChunkTask(c);
+                chunkContacts[c] = new ContactBuffer();
+                chunkCandidates[c] = new CollisionGrid.Candidates();
+            }
+        }
+        return chunks;
+    }
+
+    /**
+     * Runs one phase on every chunk and waits for all of them to finish.
+     */
+    private void run(int phase, int chunks) {
+        synchronized (this) {
+            pending = chunks - 1;
+            failure = null;
+        }
+        for (int c = 1; c < chunks; c++) {
+            ChunkTask task = chunkTasks[c];
+            task.reinitialize();
+            task.phase = phase;
+            pool.execute(task);
+        }
+        try {
+            if (chunks > 0) {
+                runChunk(phase, 0);
+            }
+        } finally {
+            awaitChunks(chunks);
+        }
+    }
+
+    /**
+     * Waits for the chunks handed to the pool, and throws whatever went wrong
+     * in them.
+     */
+    private void awaitChunks(int chunks) {
+        boolean interrupted = false;
+        Throwable failed;
+        synchronized (this) {
+            while (pending > 0) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            failed = failure;
+        }
+        // A task is marked done just after it says it has finished; it can't
+        // be used again before then
+        for (int c = 1; c < chunks; c++) {
+            while (!chunkTasks[c].isDone()) {
+                Thread.yield();
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (failed instanceof RuntimeException) {
+            throw (RuntimeException) failed;
+        } else if (failed instanceof Error) {
+            throw (Error) failed;
+        }
+    }
+
+    /**
+     * Called by each chunk handed to the pool when it has finished.
+     *
+     * @param failed what went wrong, or null
+     */
+    private synchronized void chunkFinished(Throwable failed) {
+        if (failure == null) {
+            failure = failed;
+        }
+        pending--;
+        if (pending == 0) {
+            notifyAll();
+        }
+    }
+
+    /**
+     * Does one phase for one chunk of objects.
+     */
+    private void runChunk(int phase, int c) {
+        ArrayList<GeometricObject> objects = world.getObjects();
+        int from = c * MIN_CHUNK;
+        int to = Math.min(objects.size(), from + MIN_CHUNK);
+        if (phase == CONTACTS) {
+            chunkContacts[c].clear();
+            world.findContacts(from, to, collisionGrid, chunkCandidates[c], chunkContacts[c]);
+            return;
+        }
+        for (int i = from; i < to; i++) {
+            GeometricObject object = objects.get(i);
+            if (object == null) {
+                continue;
+            }
+            if (phase == MOVE) {
+                if (world.isAsleep(object)) {
+                    world.drift((ExpandableBall) object);
+                } else if (!world.needsSubsteps(object)) {
+                    object.move(world.getTimestep());
+                }
+            } else if (world.isSteered(object) && !world.isAsleep(object)) {
+                ExpandableBall ball = (ExpandableBall) object;
+                if (world.isThinking(i)) {
+                    int closest = grid.nearest(object.xPos, object.yPos, i);
+                    world.think(ball, (closest < 0) ? null : objects.get(closest));
+                } else {
+                    ball.steer(ball.getTarget());
+                }
+            }
+        }
+    }
+
+    /**
+     * Does one phase for one chunk.
+     */
+    @SuppressWarnings("serial")
+    private class ChunkTask extends RecursiveAction {
+        private final int chunk;
+        private int phase;
+
+        ChunkTask(int chunk) {
+            this.chunk = chunk;
+        }
+
+        @Override
+        protected void compute() {
+            Throwable failed = null;
+            try {
+                runChunk(phase, chunk);
+            } catch (RuntimeException e) {
+                failed = e;
+            } catch (Error e) {
+                failed = e;
+            } finally {
+                chunkFinished(failed);
+            }
+        }
+    }
+}
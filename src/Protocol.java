@@ -0,0 +1,79 @@
+package edu.nyu.cs.cs101.consumers;
+
+/**
+ * What <code>GameServer</code> and its clients (such as
+ * <code>BotClient</code>) send each other over TCP. Every message is an int
+ * giving the length of the rest of the message, then a byte giving its kind,
+ * then the fields below, all big-endian.
+ *
+ * <pre>
+ * WELCOME  (server)  ball id (int), world width, height (ints)
+ *                    sent on joining and again whenever the player's ball
+ *                    was consumed and a new one was made
+ * UPDATE   (server)  tick (long), server time in nanoseconds (long),
+ *                    number of balls (int), the balls,
+ *                    number of balls removed (int), their ids (ints)
+ * INPUT    (client)  x, y (floats) to accelerate the player's ball towards
+ * </pre>
+ *
+ * An update only holds the balls near the player's own ball, and only what
+ * changed since the last update sent to that player. Positions are sent in
+ * 1/<code>POSITION_SCALE</code> pixels and radii in
+ * 1/<code>RADIUS_SCALE</code> pixels. Each ball is its id (int) and a byte of
+ * flags saying which fields follow:
+ *
+ * <pre>
+ * ENTER       the ball wasn't in the last update: type (byte),
+ *             x, y (ints), radius (short)
+ * SMALL_MOVE  change in x and y since the last update (bytes)
+ * MOVE        x and y (ints)
+ * RESIZE      radius (short)
+ * </pre>
+ *
+ * Balls that didn't change at all are left out. Balls that are no longer
+ * near the player, or were consumed, are in the list of removed balls; they
+ * are sent with ENTER again if they come back.
+ *
+ * @author Katie Kroik
+ */
+final class Protocol {
+    // Kinds of message
+    static final byte WELCOME = 0;
+    static final byte UPDATE = 1;
+    static final byte INPUT = 2;
+
+    // Flags for each ball in an update
+    static final int ENTER = 1;
+    static final int SMALL_MOVE = 2;
+    static final int MOVE = 4;
+    static final int RESIZE = 8;
+
+    static final double POSITION_SCALE = 8;
+    static final double RADIUS_SCALE = 16;
+
+    // Bytes before the fields of any message: the length and the kind
+    static final int HEADER_SIZE = 5;
+    // Most bytes a single ball can take in an update
+    static final int MAX_BALL_SIZE = 4 + 1 + 1 + 4 + 4 + 2;
+    // Longest message a client may send
+    static final int MAX_CLIENT_MESSAGE = 64;
+
+    private Protocol() {
+    }
+
+    /**
+     * @param position in pixels
+     * @return the position as sent
+     */
+    static int quantizePosition(double position) {
+        return (int) Math.round(position * POSITION_SCALE);
+    }
+
+    /**
+     * @param radius in pixels
+     * @return the radius as sent
+     */
+    static short quantizeRadius(double radius) {
+        return (short) Math.max(0, Math.min(Short.MAX_VALUE, Math.round(radius * RADIUS_SCALE)));
+    }
+}
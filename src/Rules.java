@@ -0,0 +1,96 @@
+package edu.nyu.cs.cs101.consumers;
+
+/**
+ * The numbers a game is played with. Every world has its own copy, so games
+ * with different rules can run side by side (see <code>BatchRunner</code>).
+ * The defaults are the rules of the normal game.
+ *
+ * @author Katie Kroik
+ */
+public class Rules {
+    // How much a ball grows or shrinks when it touches another
+    private double changeSpeed = ExpandableBall.CHANGE_SPEED;
+    // Fastest a ball can start out (and ever go, unless it is the user's)
+    private double startingMaxSpeed = World.STARTING_MAX_SPEED;
+    // Radius a MasterBall leaves behind in whatever it touches
+    private double masterContactRadius = World.MASTER_CONTACT_RADIUS;
+    // Whether MasterBalls chase bigger balls instead of drifting
+    private boolean masterSteers = false;
+
+    /**
+     * Creates the rules of the normal game.
+     */
+    public Rules() {
+    }
+
+    /**
+     * Copy constructor.
+     *
+     * @param rules to copy
+     */
+    public Rules(Rules rules) {
+        changeSpeed = rules.changeSpeed;
+        startingMaxSpeed = rules.startingMaxSpeed;
+        masterContactRadius = rules.masterContactRadius;
+        masterSteers = rules.masterSteers;
+    }
+
+    /**
+     * @return how much a ball grows or shrinks each time it touches another
+     */
+    public double getChangeSpeed() {
+        return changeSpeed;
+    }
+
+    public void setChangeSpeed(double changeSpeed) {
+        if (!(changeSpeed > 0)) {
+            throw new IllegalArgumentException("change speed must be more than 0");
+        }
+        this.changeSpeed = changeSpeed;
+    }
+
+    /**
+     * @return fastest a computer controlled ball can go
+     */
+    public double getStartingMaxSpeed() {
+        return startingMaxSpeed;
+    }
+
+    public void setStartingMaxSpeed(double startingMaxSpeed) {
+        if (!(startingMaxSpeed >= 0)) {
+            throw new IllegalArgumentException("starting max speed can't be negative");
+        }
+        this.startingMaxSpeed = startingMaxSpeed;
+    }
+
+    /**
+     * @return radius a MasterBall leaves behind in whatever it touches
+     */
+    public double getMasterContactRadius() {
+        return masterContactRadius;
+    }
+
+    public void setMasterContactRadius(double masterContactRadius) {
+        if (!(masterContactRadius >= 0)) {
+            throw new IllegalArgumentException("master contact radius can't be negative");
+        }
+        this.masterContactRadius = masterContactRadius;
+    }
+
+    /**
+     * @return true if MasterBalls move towards bigger balls near them
+     */
+    public boolean isMasterSteers() {
+        return masterSteers;
+    }
+
+    public void setMasterSteers(boolean masterSteers) {
+        this.masterSteers = masterSteers;
+    }
+
+    @Override
+    public String toString() {
+        return "change " + changeSpeed + ", speed " + startingMaxSpeed + ", master radius " + masterContactRadius
+                + (masterSteers ? ", master steers" : "");
+    }
+}
@@ -0,0 +1,583 @@
+package edu.nyu.cs.cs101.consumers;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+import com.sun.management.ThreadMXBean;
+
+/**
+ * Runs a <code>World</code> without a window: no Processing, no sound and no
+ * frame rate cap. Steps are taken back to back as fast as possible, which is
+ * what we want when measuring how many steps per second the engine manages.
+ *
+ * Usage: <code>java edu.nyu.cs.cs101.consumers.Simulation [mode] [options]</code>
+ *
+ * The options are the same as the Driver's (see <code>CommandLineArgs</code>).
+ * Only the game's own classes are needed on the class path: neither
+ * processing.jar nor Minim. With no mode, a world is run for --steps steps
+ * and the speed and time taken by each phase are printed, just like
+ * <code>Driver --headless</code>. The modes are:
+ *
+ * <pre>
+ * scaling              run the world with 1, 2, 4, ... up to --threads threads
+ * soak [restarts]      restart the world over and over (default 10000 times)
+ * alloc                check that stepping and culling allocate no memory
+ * replay FILE [steps]  play back a recorded game (default: all of it)
+ * snapshot FILE        save a world to FILE and load it back
+ * verify               check that every engine ends up in the same place
+ * </pre>
+ *
+ * The <code>scaling</code> mode prints the steps per second of each run,
+ * along with a fingerprint of the final state to show that every run ended
+ * up in exactly the same place.
+ *
+ * The <code>soak</code> mode restarts the same world over and over, the way the
+ * game does when space is pressed, and prints how long a restart takes and how
+ * much memory is in use, which should stay flat. The <code>alloc</code> mode
+ * warms a seeded world up and then checks that stepping it (on --threads
+ * threads), and finding the balls a window would draw after each step,
+ * allocates no memory at all; it exits with an error if even one byte was
+ * allocated. The <code>replay</code> mode plays
+ * back a game recorded by the Driver (see <code>InputLog</code>), which gives
+ * the same workload on every run. The <code>snapshot</code> mode saves a world
+ * to a file (see <code>World.save()</code>), loads it back and prints how long
+ * each took; the file can then be used to start runs with --snapshot. It
+ * also checks that a saved world, steered with a budget, carries on the
+ * same way once loaded. The <code>verify</code> mode steps the same world
+ * with the grid and on several threads, then without sleeping, with brute
+ * force and as an <code>ArrayWorld</code>, and exits with an error unless
+ * each group ends up with the same fingerprint.
+ *
+ * @author Katie Kroik
+ */
+public class Simulation {
+    private static final int WORLD_WIDTH = 1024;
+    private static final int WORLD_HEIGHT = 768;
+    private static final String USAGE = "Simulation [scaling | soak [restarts] | alloc | replay FILE [steps]"
+            + " | snapshot FILE | verify]";
+    private static final int DEFAULT_RESTARTS = 10000;
+    // Steps to play between restarts in the soak test
+    private static final int STEPS_PER_RESTART = 10;
+    // Steps to take before measuring allocations, so the JIT has settled
+    private static final int WARMUP_STEPS = 20000;
+    // Most rounds of warming up to wait for the buffers to stop growing
+    private static final int MAX_WARMUP_ROUNDS = 10;
+    // Seed of the world the alloc mode measures, so every run plays the same
+    // game
+    static final long ALLOC_SEED = 1;
+    // Where between two steps the alloc mode pretends to draw the balls
+    private static final float ALLOC_ALPHA = 0.5f;
+    // Steps the snapshot mode plays before saving and after loading, to
+    // check that a loaded world carries on the same way
+    private static final int SNAPSHOT_CHECK_STEPS = 200;
+    // Steering budget the snapshot mode checks with when none is given, so
+    // that the held steering state is saved too
+    private static final int SNAPSHOT_STEERING_BUDGET = 100;
+
+    private final World world;
+    private long steps = 0;
+
+    /**
+     * @param world to run
+     */
+    public Simulation(World world) {
+        this.world = world;
+    }
+
+    /**
+     * @return the world being simulated
+     */
+    public World getWorld() {
+        return world;
+    }
+
+    /**
+     * @return total number of steps taken so far
+     */
+    public long getSteps() {
+        return steps;
+    }
+
+    /**
+     * Steps the world <code>count</code> times back to back.
+     *
+     * @param count number of steps to take
+     * @return the time it took in nanoseconds
+     */
+    public long run(long count) {
+        long start = System.nanoTime();
+        for (long i = 0; i < count; i++) {
+            world.step();
+        }
+        steps += count;
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Creates a world with <code>balls</code> balls, growing the world with the
+     * number of balls so that they are as crowded as in the normal game.
+     *
+     * @param balls number of balls besides the user's
+     * @return the new world
+     */
+    static World createWorld(int balls) {
+        double scale = World.sizeScale(balls);
+        World world = new World((int) (WORLD_WIDTH * scale), (int) (WORLD_HEIGHT * scale));
+        world.createObjects(balls);
+        return world;
+    }
+
+    /**
+     * Creates an empty world sized for <code>balls</code> balls, as in
+     * <code>createWorld(balls)</code>, whose balls will be made up from
+     * <code>seed</code>.
+     *
+     * @param balls number of balls besides the user's
+     * @param seed for making up the balls
+     * @return the new world, still to be populated
+     */
+    static World createEmptyWorld(int balls, long seed) {
+        double scale = World.sizeScale(balls);
+        return new World((int) (WORLD_WIDTH * scale), (int) (WORLD_HEIGHT * scale), seed);
+    }
+
+    /**
+     * Creates a world from command line settings. Unless a size is given, the
+     * world grows with the number of balls as in <code>createWorld(balls)</code>.
+     * If a snapshot is given, the world is loaded from it instead and the
+     * number of balls, size, mix and timestep are ignored.
+     *
+     * @param settings to create the world with
+     * @return the new world
+     * @throws IOException if the snapshot can't be loaded
+     */
+    static World createWorld(CommandLineArgs settings) throws IOException {
+        return createWorld(settings, settings.getSeed());
+    }
+
+    /**
+     * Same as <code>createWorld(settings)</code>, with the balls made up from
+     * <code>seed</code>.
+     */
+    static World createWorld(CommandLineArgs settings, long seed) throws IOException {
+        World world;
+        if (settings.getSnapshotFile() != null) {
+            world = World.load(settings.getSnapshotFile());
+        } else {
+            double scale = World.sizeScale(settings.getBalls());
+            world = new World(settings.getWidth((int) (WORLD_WIDTH * scale)),
+                    settings.getHeight((int) (WORLD_HEIGHT * scale)), seed);
+            world.setTypeMix(settings.getTypeMix());
+            world.setTimestep(settings.getTimestep());
+            world.createObjects(settings.getBalls());
+        }
+        world.setSleeping(settings.isSleeping());
+        world.setSteeringBudget(settings.getSteeringBudget());
+        world.setDetailDistance(settings.getDetailDistance(World.DEFAULT_DETAIL_DISTANCE));
+        return world;
+    }
+
+    /**
+     * Runs a world made from command line settings for the number of steps
+     * they ask for and prints how fast it went and how long each phase of a
+     * step took.
+     *
+     * @param settings to run with
+     * @throws IOException if the snapshot can't be loaded or the events can't
+     *         be logged
+     */
+    static void run(CommandLineArgs settings) throws IOException {
+        World world = createWorld(settings);
+        EventLog eventLog = null;
+        if (settings.getEventsFile() != null) {
+            eventLog = new EventLog(world, settings.getEventsFile());
+            world.setListener(eventLog);
+        }
+        FrameMetrics metrics = new FrameMetrics();
+        world.setMetrics(metrics);
+        world.setThreads(settings.getThreads());
+        long count = settings.getSteps();
+        double seconds = new Simulation(world).run(count) / 1e9;
+        world.setThreads(1);
+        System.out.println(count + " steps in " + seconds + "s (" + (long) (count / seconds) + " steps/sec, "
+                + (long) (count * world.getTimestep() / seconds) + " simulated steps/sec), "
+                + world.getObjects().size() + " objects left, seed " + settings.getSeed() + ", fingerprint "
+                + Long.toHexString(fingerprint(world)));
+        for (int metric = 0; metric < FrameMetrics.size(); metric++) {
+            if (metrics.get(metric).getCount() > 0) {
+                System.out.println(metrics.describe(metric));
+            }
+        }
+        if (eventLog != null) {
+            eventLog.close();
+            System.out.println("Events logged to " + settings.getEventsFile() + ", " + eventLog.getDropped()
+                    + " dropped");
+        }
+        if (settings.getMetricsFile() != null) {
+            try {
+                metrics.dump(settings.getMetricsFile(), System.currentTimeMillis());
+            } catch (IOException e) {
+                System.err.println("Could not save metrics: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Sums up the exact state of every object in a world. Two worlds with the
+     * same fingerprint are (almost certainly) identical.
+     *
+     * @param world to look at
+     * @return the fingerprint
+     */
+    static long fingerprint(World world) {
+        long hash = world.getObjects().size();
+        for (GeometricObject object : world.getObjects()) {
+            hash = hash * 31 + Double.doubleToLongBits(object.xPos);
+            hash = hash * 31 + Double.doubleToLongBits(object.yPos);
+            hash = hash * 31 + Double.doubleToLongBits(object.xSpeed);
+            hash = hash * 31 + Double.doubleToLongBits(object.ySpeed);
+            if (object instanceof Ball) {
+                hash = hash * 31 + Double.doubleToLongBits(((Ball) object).radius);
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * Runs copies of <code>world</code> with more and more threads and prints
+     * the steps per second of each.
+     *
+     * @param world to start every run from (it is not changed)
+     * @param count number of steps per run
+     * @param maxThreads most threads to try
+     */
+    static void scaling(World world, long count, int maxThreads) {
+        System.out.println("threads\tsteps/sec\tspeedup\tfingerprint");
+        double baseline = 0;
+        int threads = 1;
+        while (true) {
+            World copy = new World(world);
+            copy.setThreads(threads);
+            double seconds = new Simulation(copy).run(count) / 1e9;
+            copy.setThreads(1);
+
+            double stepsPerSecond = count / seconds;
+            if (threads == 1) {
+                baseline = stepsPerSecond;
+            }
+            System.out.println(threads + "\t" + (long) stepsPerSecond + "\t" + (stepsPerSecond / baseline) + "\t"
+                    + Long.toHexString(fingerprint(copy)));
+
+            if (threads >= maxThreads) {
+                break;
+            }
+            threads = Math.min(threads * 2, maxThreads);
+        }
+    }
+
+    /**
+     * Steps copies of <code>world</code> with each engine and prints the
+     * fingerprint each ends up with. Sleeping changes the results (see
+     * <code>World.setSleeping()</code>), so there are two groups: the grid
+     * and several threads with sleeping on, then the grid without sleeping,
+     * brute force (see <code>World.setBruteForce()</code>, where no ball ever
+     * sleeps) and an <code>ArrayWorld</code>. An ArrayWorld doesn't limit
+     * steering, so it is left out when the world has a steering budget.
+     *
+     * @param world to start every run from (it is not changed)
+     * @param count number of steps per run
+     * @param threads threads for the parallel run (at least 2 are used)
+     * @return true if every engine ended up in the same place as the others
+     *         in its group
+     */
+    static boolean verify(World world, long count, int threads) {
+        World grid = new World(world);
+        grid.setSleeping(true);
+        new Simulation(grid).run(count);
+        long expected = fingerprint(grid);
+        System.out.println("engine	fingerprint");
+        System.out.println("grid	" + Long.toHexString(expected));
+
+        World parallel = new World(world);
+        parallel.setSleeping(true);
+        threads = Math.max(2, threads);
+        parallel.setThreads(threads);
+        new Simulation(parallel).run(count);
+        parallel.setThreads(1);
+        boolean same = report(threads + " threads", fingerprint(parallel), expected);
+
+        World awake = new World(world);
+        awake.setSleeping(false);
+        new Simulation(awake).run(count);
+        expected = fingerprint(awake);
+        System.out.println("no sleep	" + Long.toHexString(expected));
+
+        World bruteForce = new World(world);
+        bruteForce.setBruteForce(true);
+        new Simulation(bruteForce).run(count);
+        same &= report("brute force", fingerprint(bruteForce), expected);
+
+        if (world.getSteeringBudget() > 0) {
+            System.out.println("arrays	skipped, the world has a steering budget");
+        } else {
+            ArrayWorld arrays = new ArrayWorld(world);
+            for (long i = 0; i < count; i++) {
+                arrays.step();
+            }
+            same &= report("arrays", fingerprint(new World(arrays)), expected);
+        }
+        return same;
+    }
+
+    private static boolean report(String engine, long fingerprint, long expected) {
+        System.out.println(engine + "	" + Long.toHexString(fingerprint)
+                + ((fingerprint == expected) ? "" : "	different"));
+        return fingerprint == expected;
+    }
+
+    /**
+     * Restarts a world many times and prints the restart time and the memory
+     * in use every so often.
+     *
+     * @param world to restart
+     * @param balls number of balls to create on each restart
+     * @param restarts number of times to restart
+     */
+    static void soak(World world, int balls, int restarts) {
+        Runtime runtime = Runtime.getRuntime();
+        int report = Math.max(1, restarts / 10);
+        long slowest = 0;
+        long total = 0;
+        System.out.println("restarts\tmean ms\tmax ms\tused KB");
+        for (int i = 1; i <= restarts; i++) {
+            long start = System.nanoTime();
+            world.createObjects(balls);
+            long elapsed = System.nanoTime() - start;
+            total += elapsed;
+            slowest = Math.max(slowest, elapsed);
+            for (int step = 0; step < STEPS_PER_RESTART; step++) {
+                world.step();
+            }
+
+            if (i % report == 0) {
+                System.gc();
+                long used = runtime.totalMemory() - runtime.freeMemory();
+                System.out.println(i + "\t" + String.format("%.3f", total / 1e6 / report) + "\t"
+                        + String.format("%.3f", slowest / 1e6) + "\t" + used / 1024);
+                total = 0;
+                slowest = 0;
+            }
+        }
+    }
+
+    /**
+     * Measures how much memory stepping a world allocates, on this thread and
+     * on any threads stepping it in parallel. After each step, the balls a
+     * window following the user's ball would show are found, the way the
+     * Driver does before drawing a frame.
+     *
+     * The world is warmed up first, and then for as long as its buffers are
+     * still growing to fit the busiest step so far (up to
+     * <code>MAX_WARMUP_ROUNDS</code> rounds). Then a copy of it plays the steps
+     * about to be measured, so that anything the JVM only does once (compiling
+     * a branch, or creating a string constant, the first time it is reached)
+     * has been done before measuring.
+     *
+     * @param world to step (after warming it up)
+     * @param count number of steps to measure
+     * @param threads to step the world with
+     * @return bytes allocated while measuring
+     */
+    static long allocated(World world, long count, int threads) {
+        ThreadMXBean threadBean = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        Camera camera = new Camera(WORLD_WIDTH, WORLD_HEIGHT, world.getWidth(), world.getHeight());
+        world.setThreads(threads);
+        runFrames(world, camera, WARMUP_STEPS);
+        for (int round = 1; round < MAX_WARMUP_ROUNDS; round++) {
+            long before = threadBean.getThreadAllocatedBytes(thread);
+            runFrames(world, camera, WARMUP_STEPS);
+            if (threadBean.getThreadAllocatedBytes(thread) == before) {
+                break;
+            }
+        }
+
+        World rehearsal = new World(world);
+        rehearsal.setThreads(threads);
+        runFrames(rehearsal, camera, count);
+        rehearsal.setThreads(1);
+
+        long[] ids = threadBean.getAllThreadIds();
+        long before = allocatedBytes(threadBean, ids);
+        runFrames(world, camera, count);
+        long after = allocatedBytes(threadBean, ids);
+        world.setThreads(1);
+        return after - before;
+    }
+
+    /**
+     * Steps a world <code>count</code> times, finding the balls the camera
+     * can see after each step.
+     */
+    private static void runFrames(World world, Camera camera, long count) {
+        for (long i = 0; i < count; i++) {
+            world.step();
+            ExpandableBall userBall = world.getUserBall();
+            if (userBall != null) {
+                camera.follow(userBall.getDrawX(ALLOC_ALPHA), userBall.getDrawY(ALLOC_ALPHA));
+            }
+            camera.findVisible(world.getObjects(), ALLOC_ALPHA);
+        }
+    }
+
+    /**
+     * @return total bytes the given threads have allocated (threads that have
+     *         ended count as nothing)
+     */
+    private static long allocatedBytes(ThreadMXBean threadBean, long[] ids) {
+        long total = 0;
+        for (long id : ids) {
+            total += Math.max(0, threadBean.getThreadAllocatedBytes(id));
+        }
+        return total;
+    }
+
+    /**
+     * Saves a world to a snapshot, loads it back and prints how long each
+     * took.
+     *
+     * @param world to save
+     * @param fileName of the snapshot
+     * @return true if the loaded world is the same as the saved one
+     * @throws IOException if the snapshot can't be written or read
+     */
+    static boolean snapshot(World world, String fileName) throws IOException {
+        long start = System.nanoTime();
+        world.save(fileName);
+        double saveSeconds = (System.nanoTime() - start) / 1e9;
+        start = System.nanoTime();
+        ArrayWorld arrays = ArrayWorld.load(fileName);
+        double loadSeconds = (System.nanoTime() - start) / 1e9;
+        start = System.nanoTime();
+        World loaded = new World(arrays);
+        double objectSeconds = (System.nanoTime() - start) / 1e9;
+        System.out.println(arrays.getCount() + " balls: saved in " + saveSeconds + "s, loaded in " + loadSeconds
+                + "s, turned into objects in " + objectSeconds + "s");
+        return fingerprint(loaded) == fingerprint(world);
+    }
+
+    /**
+     * Checks that a world saved to a snapshot and loaded back carries on
+     * exactly as it would have: a copy of the world is stepped with a
+     * steering budget (its own, or <code>SNAPSHOT_STEERING_BUDGET</code>), saved
+     * and loaded, and then both are stepped and compared.
+     *
+     * @param world to start from (it is not changed)
+     * @param steps to take before saving and after loading
+     * @return true if both ended up in the same place
+     * @throws IOException if the snapshot can't be written or read
+     */
+    static boolean carriesOn(World world, int steps) throws IOException {
+        World original = new World(world);
+        if (original.getSteeringBudget() == 0) {
+            original.setSteeringBudget(SNAPSHOT_STEERING_BUDGET);
+        }
+        new Simulation(original).run(steps);
+        File file = File.createTempFile("snapshot", ".bin");
+        World loaded;
+        try {
+            original.save(file.getPath());
+            loaded = World.load(file.getPath());
+        } finally {
+            file.delete();
+        }
+        // Settings aren't part of a snapshot
+        loaded.setSteeringBudget(original.getSteeringBudget());
+        loaded.setDetailDistance(original.getDetailDistance());
+        new Simulation(original).run(steps);
+        new Simulation(loaded).run(steps);
+        return fingerprint(loaded) == fingerprint(original);
+    }
+
+    public static void main(String[] args) throws IOException {
+        // A mode may come first, followed by its file or count, and then the
+        // same options as the Driver
+        String mode = ((args.length > 0) && !args[0].startsWith("--")) ? args[0] : null;
+        String fileName = null;
+        long number = -1;
+        CommandLineArgs settings;
+        try {
+            int first = (mode == null) ? 0 : 1;
+            if ("replay".equals(mode) || "snapshot".equals(mode)) {
+                if (first >= args.length) {
+                    throw new IllegalArgumentException("Missing file for " + mode);
+                }
+                fileName = args[first++];
+            } else if ((mode != null) && !mode.equals("scaling") && !mode.equals("soak") && !mode.equals("alloc")
+                    && !mode.equals("verify")) {
+                throw new IllegalArgumentException("Unknown mode " + mode);
+            }
+            if (("replay".equals(mode) || "soak".equals(mode)) && (first < args.length)
+                    && !args[first].startsWith("--")) {
+                try {
+                    number = Long.parseLong(args[first++]);
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Bad count for " + mode + ": " + args[first - 1]);
+                }
+            }
+            settings = CommandLineArgs.parse(Arrays.copyOfRange(args, first, args.length));
+            Log.setLevel(settings.getLogLevel());
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(CommandLineArgs.usage(USAGE));
+            System.exit(1);
+            return;
+        }
+
+        if (mode == null) {
+            run(settings);
+        } else if (mode.equals("scaling")) {
+            scaling(createWorld(settings), settings.getSteps(), settings.getThreads());
+        } else if (mode.equals("soak")) {
+            int restarts = (number >= 0) ? (int) number : DEFAULT_RESTARTS;
+            soak(createWorld(settings), settings.getBalls(), restarts);
+        } else if (mode.equals("alloc")) {
+            long bytes = allocated(createWorld(settings, settings.getSeed(ALLOC_SEED)), settings.getSteps(),
+                    settings.getThreads());
+            System.out.println(bytes + " bytes allocated in " + settings.getSteps() + " steps on "
+                    + settings.getThreads() + " thread(s)");
+            if (bytes > 0) {
+                System.exit(1);
+            }
+        } else if (mode.equals("verify")) {
+            if (!verify(createWorld(settings), settings.getSteps(), settings.getThreads())) {
+                System.err.println("The engines don't agree");
+                System.exit(1);
+            }
+        } else if (mode.equals("replay")) {
+            InputLog log = InputLog.load(fileName);
+            long count = (number >= 0) ? number : log.getLength();
+            World world = log.createWorld();
+            world.setThreads(settings.getThreads());
+            world.setSleeping(settings.isSleeping());
+            long start = System.nanoTime();
+            log.replay(world, count);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            world.setThreads(1);
+            System.out.println(count + " steps with " + log.getCount() + " inputs in " + seconds + "s ("
+                    + (long) (count / seconds) + " steps/sec), fingerprint " + Long.toHexString(fingerprint(world)));
+        } else {
+            World world = createWorld(settings);
+            if (!snapshot(world, fileName)) {
+                System.err.println("The loaded world is not the same as the saved one");
+                System.exit(1);
+            }
+            if (!carriesOn(world, SNAPSHOT_CHECK_STEPS)) {
+                System.err.println("A loaded world doesn't carry on the same way as the saved one");
+                System.exit(1);
+            }
+        }
+    }
+}
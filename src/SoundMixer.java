@@ -0,0 +1,161 @@
+package edu.nyu.cs.cs101.consumers;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import ddf.minim.AudioPlayer;
+import ddf.minim.Minim;
+
+/**
+ * Plays the game's sound effects without slowing the game down.
+ *
+ * During a step, the game only asks for a sound with <code>request()</code>,
+ * which just sets a bit, so asking for the same sound a thousand times costs
+ * next to nothing and still only plays it once. Once per frame,
+ * <code>flush()</code> hands the sounds that were asked for to a separate audio
+ * thread, which does the (slow) work of starting them.
+ *
+ * Each sound is loaded a few times when the mixer is set up, so that it can
+ * play over itself up to that many times. If every copy is already playing,
+ * or the sound was started very recently, the request is dropped.
+ *
+ * @author Katie Kroik
+ */
+class SoundMixer implements Runnable {
+    // Most different sounds a mixer can hold (one bit each)
+    private static final int MAX_SOUNDS = 32;
+    // Don't start the same sound again sooner than this
+    private static final long MIN_INTERVAL_NANOS = 50000000L;
+
+    private final Minim minim;
+    private final AudioPlayer[][] voices = new AudioPlayer[MAX_SOUNDS][];
+    private final long[] lastPlayed = new long[MAX_SOUNDS];
+    private int soundCount = 0;
+
+    // Sounds asked for since the last flush (only touched by the game thread)
+    private int requested = 0;
+    // Sounds waiting for the audio thread
+    private final AtomicInteger pending = new AtomicInteger();
+
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    /**
+     * @param minim to load the sounds with
+     */
+    SoundMixer(Minim minim) {
+        this.minim = minim;
+        thread = new Thread(this, "SoundMixer");
+        thread.setDaemon(true);
+    }
+
+    /**
+     * Loads a sound. All sounds have to be added before <code>start()</code>.
+     *
+     * @param fileName of the sound
+     * @param bufferSize for Minim
+     * @param voices how many copies of the sound can play at the same time
+     * @return the number to ask for the sound with
+     */
+    int addSound(String fileName, int bufferSize, int voices) {
+        if (soundCount == MAX_SOUNDS) {
+            throw new IllegalStateException("Too many sounds");
+        }
+        AudioPlayer[] players = new AudioPlayer[voices];
+        for (int i = 0; i < voices; i++) {
+            players[i] = minim.loadFile(fileName, bufferSize);
+        }
+        this.voices[soundCount] = players;
+        return soundCount++;
+    }
+
+    /**
+     * Starts the audio thread.
+     */
+    void start() {
+        thread.start();
+    }
+
+    /**
+     * Asks for a sound to be played at the end of this frame. Asking for the
+     * same sound again before then does nothing.
+     *
+     * @param sound number returned by <code>addSound()</code>
+     */
+    void request(int sound) {
+        requested |= 1 << sound;
+    }
+
+    /**
+     * Hands the sounds asked for during this frame to the audio thread.
+     */
+    void flush() {
+        if (requested == 0) {
+            return;
+        }
+        int bits = requested;
+        requested = 0;
+        while (true) {
+            int old = pending.get();
+            if (pending.compareAndSet(old, old | bits)) {
+                break;
+            }
+        }
+        LockSupport.unpark(thread);
+    }
+
+    /**
+     * Stops the audio thread and closes every sound.
+     */
+    void shutdown() {
+        running = false;
+        LockSupport.unpark(thread);
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (int sound = 0; sound < soundCount; sound++) {
+            for (AudioPlayer player : voices[sound]) {
+                player.close();
+            }
+        }
+    }
+
+    /**
+     * The audio thread: waits for sounds to be handed over and starts them.
+     */
+    @Override
+    public void run() {
+        while (running) {
+            int bits = pending.getAndSet(0);
+            if (bits == 0) {
+                LockSupport.park(this);
+                continue;
+            }
+            for (int sound = 0; sound < soundCount; sound++) {
+                if ((bits & (1 << sound)) != 0) {
+                    play(sound);
+                }
+            }
+        }
+    }
+
+    /**
+     * Starts a copy of a sound that isn't playing, if there is one.
+     */
+    private void play(int sound) {
+        long now = System.nanoTime();
+        if (lastPlayed[sound] != 0 && now - lastPlayed[sound] < MIN_INTERVAL_NANOS) {
+            return;
+        }
+        for (AudioPlayer player : voices[sound]) {
+            if (!player.isPlaying()) {
+                player.rewind();
+                player.play();
+                lastPlayed[sound] = now;
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,315 @@
+package edu.nyu.cs.cs101.consumers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * A uniform grid laid over the world. Every object is dropped into the cell
+ * that contains its center, so finding the objects near a point only means
+ * looking at a handful of cells instead of the whole list of objects.
+ *
+ * Objects outside the world are clamped into the nearest edge cell. The grid
+ * is rebuilt from scratch whenever the positions change; it stores indices
+ * into the list (or arrays) it was built from, not the objects themselves.
+ *
+ * @author Katie Kroik
+ */
+public class SpatialHash {
+    // Smallest cell we are willing to use
+    private static final double MIN_CELL_SIZE = 1;
+    // Never use more cells than this many per object
+    private static final int MAX_CELLS_PER_OBJECT = 4;
+
+    private double cellSize;
+    private int columns;
+    private int rows;
+
+    // Positions of the objects the grid was built from
+    private double[] xs = new double[0];
+    private double[] ys = new double[0];
+    private int count;
+
+    // Our own copy of the positions when built from a list
+    private double[] listXs = new double[0];
+    private double[] listYs = new double[0];
+
+    // Objects sorted by cell: the objects in cell c are
+    // cellObjects[cellStart[c]] .. cellObjects[cellStart[c + 1] - 1]
+    private int[] cellStart = new int[0];
+    private int[] cellObjects = new int[0];
+    private int[] objectCell = new int[0];
+
+    // Results of the last query
+    private final Candidates candidates = new Candidates();
+
+    /**
+     * Holds the results of a query. Each thread querying the same grid needs
+     * its own.
+     */
+    public static class Candidates {
+        private int[] found = new int[16];
+
+        /**
+         * @return the indices found by the last query into this object
+         */
+        public int[] getFound() {
+            return found;
+        }
+    }
+
+    /**
+     * Builds the grid from a list of objects. Null entries are never returned
+     * from a query.
+     *
+     * @param objects to put in the grid
+     * @param width of the world
+     * @param height of the world
+     * @param cellSize width and height of a single cell
+     */
+    public void build(ArrayList<GeometricObject> objects, double width, double height, double cellSize) {
+        int size = objects.size();
+        if (listXs.length < size) {
+            listXs = new double[size * 2];
+            listYs = new double[size * 2];
+        }
+        xs = listXs;
+        ys = listYs;
+        for (int i = 0; i < size; i++) {
+            GeometricObject object = objects.get(i);
+            if (object == null) {
+                // Park it far away so that no query ever reaches it
+                xs[i] = Double.NaN;
+                ys[i] = Double.NaN;
+            } else {
+                xs[i] = object.xPos;
+                ys[i] = object.yPos;
+            }
+        }
+        index(size, width, height, cellSize);
+    }
+
+    /**
+     * Builds the grid from arrays of positions. The arrays are used as they
+     * are (not copied), so they must not change until the grid is rebuilt.
+     *
+     * @param xs x positions of the objects
+     * @param ys y positions of the objects
+     * @param count number of objects in the arrays
+     * @param width of the world
+     * @param height of the world
+     * @param cellSize width and height of a single cell
+     */
+    public void build(double[] xs, double[] ys, int count, double width, double height, double cellSize) {
+        this.xs = xs;
+        this.ys = ys;
+        index(count, width, height, cellSize);
+    }
+
+    private void index(int count, double width, double height, double cellSize) {
+        this.count = count;
+
+        // Keep the number of cells proportional to the number of objects
+        cellSize = Math.max(cellSize, MIN_CELL_SIZE);
+        long maxCells = Math.max(1, (long) count * MAX_CELLS_PER_OBJECT);
+        while ((long) cellsFor(width, cellSize) * cellsFor(height, cellSize) > maxCells) {
+            cellSize *= 2;
+        }
+        this.cellSize = cellSize;
+        columns = cellsFor(width, cellSize);
+        rows = cellsFor(height, cellSize);
+
+        int cells = columns * rows;
+        if (cellStart.length < cells + 1) {
+            cellStart = new int[cells + 1];
+        } else {
+            Arrays.fill(cellStart, 0, cells + 1, 0);
+        }
+        if (cellObjects.length < count) {
+            cellObjects = new int[count * 2];
+            objectCell = new int[count * 2];
+        }
+
+        // Counting sort of the objects by cell. Objects that are not a number
+        // (null entries) get cell -1 and are left out.
+        for (int i = 0; i < count; i++) {
+            if (Double.isNaN(xs[i])) {
+                objectCell[i] = -1;
+                continue;
+            }
+            int cell = row(ys[i]) * columns + column(xs[i]);
+            objectCell[i] = cell;
+            cellStart[cell]++;
+        }
+        // cellStart[c] becomes the end of cell c
+        for (int c = 1; c < cells; c++) {
+            cellStart[c] += cellStart[c - 1];
+        }
+        cellStart[cells] = cellStart[cells - 1];
+        // Filling backwards keeps the indices in a cell in ascending order and
+        // leaves cellStart[c] pointing at the start of cell c
+        for (int i = count - 1; i >= 0; i--) {
+            int cell = objectCell[i];
+            if (cell >= 0) {
+                cellObjects[--cellStart[cell]] = i;
+            }
+        }
+    }
+
+    private static int cellsFor(double length, double cellSize) {
+        return Math.max(1, (int) Math.ceil(length / cellSize));
+    }
+
+    private int column(double x) {
+        int column = (int) Math.floor(x / cellSize);
+        return Math.max(0, Math.min(columns - 1, column));
+    }
+
+    private int row(double y) {
+        int row = (int) Math.floor(y / cellSize);
+        return Math.max(0, Math.min(rows - 1, row));
+    }
+
+    /**
+     * Finds every object whose center might be within <code>reach</code> of
+     * the given point. The results are a superset of the real answer: callers
+     * still have to do their own exact test on each one.
+     *
+     * The indices are returned in ascending order, so visiting them gives the
+     * same order as walking the original list.
+     *
+     * @param x position to search around
+     * @param y position to search around
+     * @param reach how far away from the point to look
+     * @return the number of candidates, which can be read with
+     *         <code>getFound()</code>
+     */
+    public int query(double x, double y, double reach) {
+        return query(x, y, reach, candidates);
+    }
+
+    /**
+     * Same as <code>query(x, y, reach)</code>, but puts the results in
+     * <code>into</code> so that several threads can query the grid at once.
+     *
+     * @param x position to search around
+     * @param y position to search around
+     * @param reach how far away from the point to look
+     * @param into where to put the results
+     * @return the number of candidates
+     */
+    public int query(double x, double y, double reach, Candidates into) {
+        int[] found = into.found;
+        if (count == 0 || reach < 0 || Double.isNaN(x)) {
+            return 0;
+        }
+        int firstColumn = column(x - reach);
+        int lastColumn = column(x + reach);
+        int firstRow = row(y - reach);
+        int lastRow = row(y + reach);
+
+        int size = 0;
+        for (int row = firstRow; row <= lastRow; row++) {
+            int start = cellStart[row * columns + firstColumn];
+            int end = cellStart[row * columns + lastColumn + 1];
+            // Cells in the same row are next to each other in cellObjects
+            int length = end - start;
+            if (size + length > found.length) {
+                found = Arrays.copyOf(found, Math.max(found.length * 2, size + length));
+                into.found = found;
+            }
+            System.arraycopy(cellObjects, start, found, size, length);
+            size += length;
+        }
+        if (firstRow != lastRow || firstColumn != lastColumn) {
+            Arrays.sort(found, 0, size);
+        }
+        return size;
+    }
+
+    /**
+     * Finds the object closest to the given point. Cells are searched in rings
+     * around the point, stopping as soon as nothing outside the rings searched
+     * so far could be any closer. When two objects are exactly as close, the
+     * one with the lower index wins, just like walking the list in order.
+     *
+     * @param x position to search around
+     * @param y position to search around
+     * @param exclude index of an object to ignore (usually the one asking)
+     * @return index of the closest object, or -1 if there is none
+     */
+    public int nearest(double x, double y, int exclude) {
+        if (count == 0 || Double.isNaN(x)) {
+            return -1;
+        }
+        int column = column(x);
+        int row = row(y);
+        int closest = -1;
+        double shortestDistance = Double.POSITIVE_INFINITY; // squared
+
+        for (int ring = 0;; ring++) {
+            int firstColumn = column - ring;
+            int lastColumn = column + ring;
+            int firstRow = row - ring;
+            int lastRow = row + ring;
+
+            // Visit the cells on the border of this ring that are in the grid
+            for (int r = Math.max(firstRow, 0); r <= Math.min(lastRow, rows - 1); r++) {
+                boolean wholeRow = (r == firstRow) || (r == lastRow);
+                for (int c = Math.max(firstColumn, 0); c <= Math.min(lastColumn, columns - 1); c++) {
+                    if (!wholeRow && c != firstColumn && c != lastColumn) {
+                        // Skip over the inside of the ring
+                        c = lastColumn - 1;
+                        continue;
+                    }
+                    int cell = r * columns + c;
+                    for (int k = cellStart[cell]; k < cellStart[cell + 1]; k++) {
+                        int i = cellObjects[k];
+                        if (i == exclude) {
+                            continue;
+                        }
+                        double deltaX = xs[i] - x;
+                        double deltaY = ys[i] - y;
+                        double distance = deltaX * deltaX + deltaY * deltaY;
+                        if ((distance < shortestDistance) || (distance == shortestDistance && i < closest)) {
+                            closest = i;
+                            shortestDistance = distance;
+                        }
+                    }
+                }
+            }
+
+            // How close could anything outside the searched square be?
+            double bound = Double.POSITIVE_INFINITY;
+            if (firstColumn > 0)
+                bound = Math.min(bound, x - firstColumn * cellSize);
+            if (lastColumn < columns - 1)
+                bound = Math.min(bound, (lastColumn + 1) * cellSize - x);
+            if (firstRow > 0)
+                bound = Math.min(bound, y - firstRow * cellSize);
+            if (lastRow < rows - 1)
+                bound = Math.min(bound, (lastRow + 1) * cellSize - y);
+
+            if (bound == Double.POSITIVE_INFINITY) {
+                // Searched the whole grid
+                return closest;
+            }
+            if ((closest >= 0) && (shortestDistance < bound * bound)) {
+                return closest;
+            }
+        }
+    }
+
+    /**
+     * @return the candidates found by the last query
+     */
+    public int[] getFound() {
+        return candidates.found;
+    }
+
+    /**
+     * @return the size of a cell after the last build
+     */
+    public double getCellSize() {
+        return cellSize;
+    }
+}
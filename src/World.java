@@ -0,0 +1,1297 @@
+package edu.nyu.cs.cs101.consumers;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Random;
+
+/**
+ * The world holds every shape in the game and knows how to advance them by
+ * one step: bouncing off walls, colliding (growing and shrinking), steering
+ * the computer controlled balls and moving everything.
+ *
+ * A world has no window, no sound and no frame rate, so it can be stepped as
+ * fast as the CPU allows. The <code>Driver</code> draws it and feeds it user
+ * input; anything else that wants to know what happened inside a step can
+ * register a <code>WorldListener</code>.
+ *
+ * @author Katie Kroik
+ */
+public class World {
+    // Number of shapes to start with
+    static final int NUM_OBJECTS = 30;
+
+    // How often each kind of ball is made, by BallType ordinal: out of every
+    // 12 balls, 1 is a plain ExpandableBall, 2 are EvadingBalls and so on
+    static final int[] DEFAULT_TYPE_MIX = { 1, 2, 3, 3, 2, 1 };
+
+    // Limits for shapes at creation time
+    static final double STARTING_MAX_SPEED = .25;
+    static final int STARTING_MAX_SIZE = 30;
+    static final double STARTING_BOUNCY_MAX_SPEED = 6;
+
+    // Player shape attributes at start
+    static final int PLAYER_SIZE = STARTING_MAX_SIZE;
+    static final double PLAYER_MAX_SPEED = 5;
+
+    // Minimum distance a shape can be generated near the user shape
+    static final double MIN_DISTANCE = 20;
+
+    // Radius a MasterBall leaves behind in whatever it touches
+    static final double MASTER_CONTACT_RADIUS = 10;
+
+    // Balls that moved farther than this in a step are checked for
+    // collisions along their whole path, not just where they ended up
+    static final double SWEEP_DISTANCE = 1;
+    // Balls that would move farther than this in a step move in several
+    // smaller pieces, bouncing off the walls in between
+    static final double SUBSTEP_DISTANCE = 8;
+
+    // Steps a ball with nothing near it sleeps for at a time
+    static final int SLEEP_STEPS = 8;
+    // Steps to wait after a ball couldn't go to sleep before trying again
+    static final int SLEEP_CHECK_INTERVAL = 8;
+    // Extra room a sleeping ball keeps from everything, for rounding
+    static final double SLEEP_MARGIN = 1;
+
+    // Balls far from every player look for their closest object at most this
+    // often when steering is limited
+    static final int FAR_THINK_INTERVAL = 4;
+    // Default for setDetailDistance(): about the diagonal of the window
+    static final double DEFAULT_DETAIL_DISTANCE = 1300;
+
+    // Size of the world
+    private final int width;
+    private final int height;
+
+    // Maximum x value for BouncyBall
+    private final double maxBouncyX;
+
+    // Generic expandable shapes
+    private ArrayList<GeometricObject> objects = new ArrayList<GeometricObject>();
+    // User controlled shape
+    private ExpandableBall userBall;
+    // Consumed balls, kept to be used again
+    private final BallPool pool = new BallPool();
+    // Makes up where new balls go and what they are like
+    private final Random rand;
+    // How often each kind of ball is made
+    private int[] typeMix = DEFAULT_TYPE_MIX;
+    private int typeMixTotal = 12;
+    // Numbers the game is played with
+    private Rules rules = new Rules();
+
+    private WorldListener listener;
+
+    // Broadphase for collisions
+    private final CollisionGrid collisionGrid = new CollisionGrid();
+    private final CollisionGrid.Candidates candidates = new CollisionGrid.Candidates();
+    // Pairs of balls that touched during this step
+    private final ContactBuffer contacts = new ContactBuffer();
+    // Every ball at the start of the collision stage, by index, as plain
+    // arrays. Reach is the radius plus how far the ball came, or NaN for
+    // objects that aren't balls.
+    private double[] ballXs = new double[0];
+    private double[] ballYs = new double[0];
+    private double[] ballPrevXs = new double[0];
+    private double[] ballPrevYs = new double[0];
+    private double[] ballRadii = new double[0];
+    private double[] ballReach = new double[0];
+    private boolean[] ballMoved = new boolean[0];
+    // Farthest each ball can go in a step from now on, and whether it is
+    // asleep this step
+    private double[] ballBound = new double[0];
+    private boolean[] ballAsleep = new boolean[0];
+    // Farthest any ball can go in a step, this step and the last
+    private double speedBound = 0;
+    private double lastSpeedBound = 0;
+    // Balls that look for collisions this step
+    private int awake = 0;
+    // Let balls with nothing near them sleep
+    private boolean sleeping = true;
+    // Set when a ball touched a sleeping ball, which means the contacts have
+    // to be found again
+    private boolean wokeSleepers = false;
+    // Nearest neighbour index for steering
+    private final SpatialHash grid = new SpatialHash();
+    // Most balls far from every player that look for their closest object in
+    // one step, or 0 for every ball every step
+    private int steeringBudget = 0;
+    // Balls this close to a player look every step
+    private double detailDistance = DEFAULT_DETAIL_DISTANCE;
+    // Where the far balls' turns to look got to
+    private int steeringCursor = 0;
+    // Whether each ball looks for its closest object this step
+    private boolean[] thinking = new boolean[0];
+    // Check every ball against every other ball (slow, but obviously right)
+    private boolean bruteForce = false;
+    // Runs parts of the step on several threads (null for single threaded)
+    private ParallelStep parallelStep;
+    // Where to record how long each phase takes (null to not measure)
+    private FrameMetrics metrics;
+    // How far everything moves in one step, in multiples of its speed
+    private double timestep = 1;
+    // Steps taken since the world was created
+    private long steps = 0;
+    // Id to give the next ball made
+    private int nextId = 0;
+
+    /**
+     * @param balls number of balls besides the user's
+     * @return how much wider and taller than the normal game a world for
+     *         that many balls has to be for them to be as crowded
+     */
+    static double sizeScale(int balls) {
+        return Math.sqrt(Math.max(1.0, (double) balls / NUM_OBJECTS));
+    }
+
+    /**
+     * Creates an empty world. Call <code>createObjects()</code> to populate it.
+     *
+     * @param width of the world
+     * @param height of the world
+     */
+    public World(int width, int height) {
+        this(width, height, new Random());
+    }
+
+    /**
+     * Creates an empty world whose balls will always be made up the same way
+     * for the same seed, so a run can be repeated exactly.
+     *
+     * @param width of the world
+     * @param height of the world
+     * @param seed for making up the balls
+     */
+    public World(int width, int height, long seed) {
+        this(width, height, new Random(seed));
+    }
+
+    private World(int width, int height, Random rand) {
+        this.width = width;
+        this.height = height;
+        this.maxBouncyX = width / 2;
+        this.rand = rand;
+    }
+
+    /**
+     * Creates a world holding copies of everything in <code>world</code>.
+     * Stepping the copy gives exactly the same results as stepping the
+     * original, and it makes up the same new balls. The listener, metrics
+     * and threads are not copied.
+     *
+     * @param world to copy
+     */
+    public World(World world) {
+        this(world.width, world.height, copyOf(world.rand));
+        timestep = world.timestep;
+        rules = world.rules;
+        typeMix = world.typeMix;
+        typeMixTotal = world.typeMixTotal;
+        bruteForce = world.bruteForce;
+        sleeping = world.sleeping;
+        nextId = world.nextId;
+        steeringBudget = world.steeringBudget;
+        detailDistance = world.detailDistance;
+        steeringCursor = world.steeringCursor;
+        IdentityHashMap<GeometricObject, GeometricObject> copies =
+                new IdentityHashMap<GeometricObject, GeometricObject>();
+        for (int i = 0; i < world.objects.size(); i++) {
+            GeometricObject object = world.objects.get(i);
+            ExpandableBall copy = BallType.copy((ExpandableBall) object);
+            if (object == world.userBall) {
+                userBall = copy;
+            }
+            objects.add(copy);
+            copies.put(object, copy);
+        }
+        // What the balls steer relative to, with the steps counted from here
+        for (int i = 0; i < objects.size(); i++) {
+            ExpandableBall original = (ExpandableBall) world.objects.get(i);
+            ExpandableBall copy = (ExpandableBall) objects.get(i);
+            copy.player = original.player;
+            copy.hold(copies.get(original.getTarget()), original.nextThink - world.steps);
+            copy.sleepUntil = original.sleepUntil - world.steps;
+            copy.nextSleepCheck = original.nextSleepCheck - world.steps;
+            copy.sleepX = original.sleepX;
+            copy.sleepY = original.sleepY;
+            copy.sleptAt = original.sleptAt - world.steps;
+        }
+        lastSpeedBound = world.lastSpeedBound;
+    }
+
+    /**
+     * @param rand to copy
+     * @return a generator that gives the same numbers as <code>rand</code>
+     *         from now on
+     */
+    private static Random copyOf(Random rand) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            ObjectOutputStream out = new ObjectOutputStream(bytes);
+            out.writeObject(rand);
+            out.close();
+            return (Random) new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not copy the random number generator", e);
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException("Could not copy the random number generator", e);
+        }
+    }
+
+    /**
+     * Creates a world holding the same balls as <code>world</code>. Balls
+     * made up later (on <code>createObjects()</code>) are random.
+     *
+     * @param world to copy
+     */
+    public World(ArrayWorld world) {
+        this(world.getWidth(), world.getHeight());
+        timestep = world.getTimestep();
+        objects = world.toObjects();
+        nextId = world.getNextId();
+        steeringCursor = world.getSteeringCursor();
+        if (world.getUserIndex() >= 0) {
+            userBall = (ExpandableBall) objects.get(world.getUserIndex());
+            // Whatever else the arrays say, the user's ball is a player's
+            userBall.player = true;
+        }
+    }
+
+    /**
+     * Writes every ball to a snapshot file (see <code>ArrayWorld</code> for
+     * the format). Which balls are asleep isn't saved, so every ball is woken
+     * up first: this world and the one loaded from the file then carry on
+     * the same way.
+     *
+     * @param fileName to write to
+     * @throws IOException if the file can't be written
+     */
+    public void save(String fileName) throws IOException {
+        wakeAll();
+        new ArrayWorld(this).save(fileName);
+    }
+
+    /**
+     * Reads a world written by <code>save()</code>.
+     *
+     * @param fileName to read from
+     * @return the world
+     * @throws IOException if the file can't be read or isn't a snapshot
+     */
+    public static World load(String fileName) throws IOException {
+        return new World(ArrayWorld.load(fileName));
+    }
+
+    /**
+     * Changes how often each kind of ball is made by
+     * <code>createObjects()</code>.
+     *
+     * @param typeMix a weight for each <code>BallType</code>, by ordinal
+     */
+    public void setTypeMix(int[] typeMix) {
+        int total = 0;
+        for (int weight : typeMix) {
+            total += weight;
+        }
+        if (typeMix.length != BallType.values().length || total <= 0) {
+            throw new IllegalArgumentException("Need a weight for every kind of ball");
+        }
+        this.typeMix = typeMix.clone();
+        this.typeMixTotal = total;
+    }
+
+    /**
+     * Changes the rules of the game. Balls already in the world keep the
+     * speed they were made with.
+     *
+     * @param rules to play by (they are copied)
+     */
+    public void setRules(Rules rules) {
+        this.rules = new Rules(rules);
+    }
+
+    /**
+     * @return the rules of the game (don't change them)
+     */
+    public Rules getRules() {
+        return rules;
+    }
+
+    /**
+     * @param listener to notify about wall hits, collisions and consumed balls
+     */
+    public void setListener(WorldListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Switches between using the grid (for collisions and for finding the
+     * closest ball when steering) and checking every pair of balls. Balls
+     * never sleep when every pair is checked, so brute force gives the same
+     * result as the grid with sleeping switched off; it is there to validate
+     * the grid.
+     *
+     * @param bruteForce true to check every ball against every other
+     */
+    public void setBruteForce(boolean bruteForce) {
+        this.bruteForce = bruteForce;
+    }
+
+    /**
+     * Sets how many threads to step the world with. Any number of threads
+     * gives exactly the same results as a single thread.
+     *
+     * @param threads to use; 1 steps everything on the calling thread
+     */
+    public void setThreads(int threads) {
+        if (parallelStep != null) {
+            parallelStep.shutdown();
+        }
+        parallelStep = (threads > 1) ? new ParallelStep(this, threads) : null;
+    }
+
+    /**
+     * Switches sleeping on or off. A computer controlled ball that nothing can
+     * reach for a few steps, and that can't reach a wall in that time, goes
+     * to sleep: it doesn't bounce, look for collisions or steer, and instead
+     * of being moved a step at a time it is put where its speed has taken it
+     * since it fell asleep. It wakes up when its time is up, when something
+     * touches it, or when anything gets faster than it was allowed for.
+     *
+     * A sleeping ball that would have steered keeps going the way it was, so
+     * sleeping changes how the game plays out a little. Every engine that
+     * lets balls sleep still gets the same results as every other one.
+     *
+     * @param sleeping true to let balls sleep
+     */
+    public void setSleeping(boolean sleeping) {
+        this.sleeping = sleeping;
+    }
+
+    /**
+     * Limits how many computer controlled balls far from every player look
+     * for their closest object in one step. Balls within the detail distance
+     * of a player (see <code>setDetailDistance()</code>) still look every
+     * step. The others keep steering relative to what they found last time,
+     * and take turns to look again: each at most every
+     * <code>FAR_THINK_INTERVAL</code> steps, and at most
+     * <code>budget</code> of them in a step.
+     *
+     * @param budget most far balls that look in one step, or 0 for every
+     *        ball every step
+     */
+    public void setSteeringBudget(int budget) {
+        if (budget < 0) {
+            throw new IllegalArgumentException("Steering budget must not be negative: " + budget);
+        }
+        steeringBudget = budget;
+    }
+
+    /**
+     * @return most far balls that look in one step, or 0 for no limit (see
+     *         <code>setSteeringBudget()</code>)
+     */
+    public int getSteeringBudget() {
+        return steeringBudget;
+    }
+
+    /**
+     * @return distance from a player within which balls always look (see
+     *         <code>setDetailDistance()</code>)
+     */
+    public double getDetailDistance() {
+        return detailDistance;
+    }
+
+    /**
+     * @param distance from a player within which balls always look for their
+     *        closest object when steering is limited (see
+     *        <code>setSteeringBudget()</code>)
+     */
+    public void setDetailDistance(double distance) {
+        if (!(distance >= 0)) {
+            throw new IllegalArgumentException("Detail distance must not be negative: " + distance);
+        }
+        detailDistance = distance;
+    }
+
+    /**
+     * Sets how much time passes in one step. A bigger timestep takes fewer
+     * steps to cover the same time; fast balls are moved in smaller pieces
+     * and checked for collisions along their whole path, so they don't jump
+     * over things. Growing and shrinking still happen once per step.
+     *
+     * @param timestep how far each ball moves per step, in multiples of its
+     *        speed (1 is normal)
+     */
+    public void setTimestep(double timestep) {
+        if (!(timestep > 0)) {
+            throw new IllegalArgumentException("timestep must be more than 0");
+        }
+        this.timestep = timestep;
+        // Sleeping balls drift at the old timestep
+        wakeAll();
+    }
+
+    public double getTimestep() {
+        return timestep;
+    }
+
+    /**
+     * @param metrics to record the time each phase of a step takes in, or
+     *        null to stop measuring
+     */
+    public void setMetrics(FrameMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * @return the shapes in this world (the user ball is one of them)
+     */
+    public ArrayList<GeometricObject> getObjects() {
+        return objects;
+    }
+
+    /**
+     * @return the user controlled ball, or null if it has been consumed
+     */
+    public ExpandableBall getUserBall() {
+        return userBall;
+    }
+
+    /**
+     * Accelerates the user ball towards a point, if it is still in the game.
+     *
+     * @param x to accelerate towards
+     * @param y to accelerate towards
+     */
+    public void accelerateUserBall(double x, double y) {
+        if (userBall != null) {
+            userBall.accelerate(x, y);
+        }
+    }
+
+    /**
+     * @return id to give the next ball made
+     */
+    int getNextId() {
+        return nextId;
+    }
+
+    /**
+     * @return where the far balls' turns to look got to (see
+     *         <code>planSteering()</code>)
+     */
+    int getSteeringCursor() {
+        return steeringCursor;
+    }
+
+    /**
+     * @return the number of steps taken since the world was created
+     */
+    public long getSteps() {
+        return steps;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Advances the world by one step.
+     */
+    public void step() {
+        long start = (metrics == null) ? 0 : System.nanoTime();
+        long time = start;
+        checkForWallCollisions();
+        time = lap(FrameMetrics.WALLS, time);
+        int contacts;
+        if (parallelStep != null) {
+            contacts = parallelStep.checkForObjectCollisions();
+        } else {
+            contacts = checkForObjectCollisions();
+        }
+        time = lap(FrameMetrics.COLLISIONS, time);
+        removeConsumed();
+        time = lap(FrameMetrics.REMOVE, time);
+        if (parallelStep != null) {
+            parallelStep.steerObjects();
+        } else {
+            steerObjects();
+        }
+        time = lap(FrameMetrics.STEER, time);
+        if (parallelStep != null) {
+            parallelStep.moveObjects();
+        } else {
+            moveObjects();
+        }
+        time = lap(FrameMetrics.MOVE, time);
+        steps++;
+
+        if (metrics != null) {
+            metrics.record(FrameMetrics.STEP, time - start);
+            metrics.record(FrameMetrics.BALLS, objects.size());
+            metrics.record(FrameMetrics.CONTACTS, contacts);
+            metrics.record(FrameMetrics.AWAKE, awake);
+        }
+    }
+
+    /**
+     * Records how long a phase of the step took, if we are measuring.
+     *
+     * @param phase that just finished
+     * @param start when it started
+     * @return the time now, which is when the next phase starts
+     */
+    private long lap(int phase, long start) {
+        if (metrics == null) {
+            return 0;
+        }
+        long now = System.nanoTime();
+        metrics.record(phase, now - start);
+        return now;
+    }
+
+    /**
+     * Points every computer controlled ball relative to the object closest to
+     * it. Each ball is steered exactly once per step, and all of them look at
+     * the positions from before anything moved.
+     */
+    void steerObjects() {
+        if (!bruteForce || (steeringBudget > 0)) {
+            // Cells sized so that there is about one object per cell
+            int size = Math.max(1, objects.size());
+            grid.build(objects, width, height, Math.sqrt((double) width * height / size));
+        }
+        planSteering(grid);
+        for (int i = 0; i < objects.size(); i++) {
+            GeometricObject object = objects.get(i);
+            if (!isSteered(object) || isAsleep(object)) {
+                continue;
+            }
+            ExpandableBall ball = (ExpandableBall) object;
+            if (!isThinking(i)) {
+                ball.steer(ball.getTarget());
+                continue;
+            }
+            GeometricObject closest;
+            if (bruteForce) {
+                closest = GeometricObject.getClosest(object, objects);
+            } else {
+                int index = grid.nearest(object.xPos, object.yPos, i);
+                closest = (index < 0) ? null : objects.get(index);
+            }
+            think(ball, closest);
+        }
+    }
+
+    /**
+     * Decides which balls look for their closest object this step when
+     * steering is limited (see <code>setSteeringBudget()</code>): every ball
+     * near a player, and the next far balls whose turn it is. This has to be
+     * done before any ball is steered.
+     *
+     * @param grid built from the objects as they are now
+     */
+    void planSteering(SpatialHash grid) {
+        if (steeringBudget <= 0) {
+            return;
+        }
+        int size = objects.size();
+        if (thinking.length < size) {
+            thinking = new boolean[size * 2];
+        }
+        Arrays.fill(thinking, 0, size, false);
+        double reach = detailDistance * detailDistance;
+        for (int i = 0; i < size; i++) {
+            GeometricObject object = objects.get(i);
+            if (!(object instanceof ExpandableBall) || !((ExpandableBall) object).player) {
+                continue;
+            }
+            int found = grid.query(object.xPos, object.yPos, detailDistance);
+            int[] indices = grid.getFound();
+            for (int k = 0; k < found; k++) {
+                GeometricObject other = objects.get(indices[k]);
+                double deltaX = other.xPos - object.xPos;
+                double deltaY = other.yPos - object.yPos;
+                if (deltaX * deltaX + deltaY * deltaY <= reach) {
+                    thinking[indices[k]] = true;
+                }
+            }
+        }
+        // The far balls take turns, carrying on from where the last step
+        // stopped
+        int served = 0;
+        int start = (size == 0) ? 0 : steeringCursor % size;
+        for (int k = 0; (k < size) && (served < steeringBudget); k++) {
+            int i = (start + k) % size;
+            GeometricObject object = objects.get(i);
+            if (!thinking[i] && isSteered(object) && !isAsleep(object)
+                    && (steps >= ((ExpandableBall) object).nextThink)) {
+                thinking[i] = true;
+                served++;
+                steeringCursor = i + 1;
+            }
+        }
+    }
+
+    /**
+     * @param i index of a ball
+     * @return true if the ball looks for its closest object this step (see
+     *         <code>planSteering()</code>)
+     */
+    boolean isThinking(int i) {
+        return (steeringBudget <= 0) || thinking[i];
+    }
+
+    /**
+     * Steers a ball relative to the closest object it just found, and
+     * remembers that object for the steps in which it doesn't look.
+     *
+     * @param ball to steer
+     * @param closest object to the ball, or null if there is none
+     */
+    void think(ExpandableBall ball, GeometricObject closest) {
+        ball.hold(closest, steps + FAR_THINK_INTERVAL);
+        ball.steer(closest);
+    }
+
+    /**
+     * @param object to check
+     * @return true if the object is a computer controlled ball that steers
+     */
+    boolean isSteered(GeometricObject object) {
+        return (object instanceof ConsumingBall) || (object instanceof EvadingBall)
+                || (object instanceof IntelligentBall) || (rules.isMasterSteers() && (object instanceof MasterBall));
+    }
+
+    /**
+     * Moves every object.
+     */
+    void moveObjects() {
+        for (int i = 0; i < objects.size(); i++) {
+            GeometricObject object = objects.get(i);
+            // Ignore non-existent items
+            if (object == null)
+                continue;
+            if (isAsleep(object)) {
+                drift((ExpandableBall) object);
+            } else {
+                moveObject(object);
+            }
+        }
+    }
+
+    /**
+     * @param object to check
+     * @return true if the object is a ball that is asleep this step (see
+     *         <code>setSleeping()</code>)
+     */
+    boolean isAsleep(GeometricObject object) {
+        return sleeping && (object instanceof ExpandableBall) && (((ExpandableBall) object).sleepUntil > steps);
+    }
+
+    /**
+     * Moves a sleeping ball to where its speed has taken it since it fell
+     * asleep, in one go rather than adding up a move for every step. Nothing
+     * changes its speed while it sleeps.
+     *
+     * @param ball to move
+     */
+    void drift(ExpandableBall ball) {
+        double time = (steps + 1 - ball.sleptAt) * timestep;
+        ball.prevXPos = ball.xPos;
+        ball.prevYPos = ball.yPos;
+        ball.xPos = ball.sleepX + ball.xSpeed * time;
+        ball.yPos = ball.sleepY + ball.ySpeed * time;
+    }
+
+    /**
+     * Wakes up every sleeping ball.
+     */
+    private void wakeAll() {
+        for (int i = 0; i < objects.size(); i++) {
+            GeometricObject object = objects.get(i);
+            if (object instanceof ExpandableBall) {
+                ((ExpandableBall) object).sleepUntil = 0;
+                ((ExpandableBall) object).nextSleepCheck = 0;
+            }
+        }
+    }
+
+    /**
+     * @param object to check
+     * @return true if the object moves too far in one step to move in one go
+     */
+    boolean needsSubsteps(GeometricObject object) {
+        double distance = SUBSTEP_DISTANCE / timestep;
+        return object.xSpeed * object.xSpeed + object.ySpeed * object.ySpeed > distance * distance;
+    }
+
+    /**
+     * Moves one object by a whole step. Fast objects move in several pieces
+     * and bounce off the walls in between; afterwards they remember where the
+     * step started, so that collisions are checked along the whole way.
+     *
+     * @param object to move
+     */
+    void moveObject(GeometricObject object) {
+        if (!needsSubsteps(object)) {
+            object.move(timestep);
+            return;
+        }
+        double speed = Math.sqrt(object.xSpeed * object.xSpeed + object.ySpeed * object.ySpeed);
+        int substeps = (int) Math.ceil(speed * timestep / SUBSTEP_DISTANCE);
+        double startX = object.xPos;
+        double startY = object.yPos;
+        for (int i = 0; i < substeps; i++) {
+            if (i > 0) {
+                bounceOffWalls(object);
+            }
+            object.move(timestep / substeps);
+        }
+        object.prevXPos = startX;
+        object.prevYPos = startY;
+    }
+
+    /**
+     * Checks for collisions between objects and the walls
+     */
+    void checkForWallCollisions() {
+        for (int i = 0; i < objects.size(); i++) {
+            GeometricObject shape = objects.get(i);
+            // Sleeping balls are nowhere near a wall
+            if ((shape == null) || isAsleep(shape))
+                continue;
+            bounceOffWalls(shape);
+        }
+    }
+
+    /**
+     * Turns an object around if it has gone past a wall and is still heading
+     * further out
+     *
+     * @param shape to check
+     */
+    private void bounceOffWalls(GeometricObject shape) {
+        // BouncyBalls only get the left part of the world
+        if (shape instanceof BouncyBall) {
+            if ((shape.getX() > maxBouncyX) && (shape.xSpeed > 0)) {
+                shape.reverseX();
+            }
+        }
+        // Hit the top?
+        if ((shape.getY() < 0) && (shape.ySpeed < 0)) {
+            shape.reverseY();
+            wallHit(shape);
+        }
+        // Hit the bottom?
+        if ((shape.getY() > height) && (shape.ySpeed > 0)) {
+            shape.reverseY();
+            wallHit(shape);
+        }
+        // Hit the left?
+        if ((shape.getX() < 0) && (shape.xSpeed < 0)) {
+            shape.reverseX();
+            wallHit(shape);
+        }
+        // Hit the right?
+        if ((shape.getX() > width) && (shape.xSpeed > 0)) {
+            shape.reverseX();
+            wallHit(shape);
+        }
+    }
+
+    /**
+     * Handles collisions between objects: first every pair of balls that
+     * touched is found, without changing anything, then the rules of the
+     * game are applied to each pair in the order they were found.
+     *
+     * @return the number of pairs of balls that touched
+     */
+    int checkForObjectCollisions() {
+        contacts.clear();
+        if (bruteForce) {
+            findContactsBruteForce(contacts);
+        } else {
+            prepareContacts(collisionGrid);
+            do {
+                contacts.clear();
+                findContacts(0, objects.size(), collisionGrid, candidates, contacts);
+            } while (checkWokeSleepers());
+        }
+        return resolveContacts(contacts);
+    }
+
+    /**
+     * Removes objects that have been consumed. The objects that are left stay
+     * in the same order.
+     */
+    void removeConsumed() {
+        int size = objects.size();
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            GeometricObject object = objects.get(i);
+            if (object.getArea() > 1) {
+                objects.set(kept++, object);
+                continue;
+            }
+            Log.log(Log.DEBUG, "Consumed ball @({}, {}) with velocity ({}, {})", object.xPos, object.yPos,
+                    object.xSpeed, object.ySpeed);
+            if (object == userBall) {
+                // End message will display if userball is null
+                userBall = null;
+            }
+            if (listener != null) {
+                listener.consumed(object);
+            }
+            if (object instanceof ExpandableBall) {
+                pool.release((ExpandableBall) object);
+            }
+        }
+        // Removing from the end doesn't move anything
+        for (int i = size - 1; i >= kept; i--) {
+            objects.remove(i);
+        }
+    }
+
+    /**
+     * Finds every pair of balls that touched by checking every ball against
+     * every other ball.
+     *
+     * @param into to add the pairs to
+     */
+    private void findContactsBruteForce(ContactBuffer into) {
+        for (int i = 0; i < objects.size(); i++) {
+            GeometricObject object = objects.get(i);
+            if (!(object instanceof ExpandableBall)) {
+                continue;
+            }
+            for (int j = 0; j < objects.size(); j++) {
+                GeometricObject otherObject = objects.get(j);
+                // Currently only checking for collisions between balls
+                if (!(otherObject instanceof ExpandableBall)) {
+                    continue;
+                }
+                if (Ball.isSweptCollision((Ball) object, (Ball) otherObject)) {
+                    into.add(i, j);
+                }
+            }
+        }
+    }
+
+    /**
+     * Copies the position and size of every ball into plain arrays, and
+     * builds a collision grid from them. This has to be done before
+     * <code>findContacts()</code>.
+     *
+     * @param collisionGrid to build
+     */
+    void prepareContacts(CollisionGrid collisionGrid) {
+        int size = objects.size();
+        if (ballXs.length < size) {
+            ballXs = new double[size * 2];
+            ballYs = new double[size * 2];
+            ballPrevXs = new double[size * 2];
+            ballPrevYs = new double[size * 2];
+            ballRadii = new double[size * 2];
+            ballReach = new double[size * 2];
+            ballMoved = new boolean[size * 2];
+            ballBound = new double[size * 2];
+            ballAsleep = new boolean[size * 2];
+        }
+        double sweep = SWEEP_DISTANCE * SWEEP_DISTANCE;
+        double bound = 0;
+        awake = 0;
+        for (int i = 0; i < size; i++) {
+            GeometricObject object = objects.get(i);
+            if (!(object instanceof ExpandableBall)) {
+                ballXs[i] = Double.NaN;
+                ballReach[i] = Double.NaN;
+                continue;
+            }
+            ExpandableBall ball = (ExpandableBall) object;
+            double moveX = object.xPos - object.prevXPos;
+            double moveY = object.yPos - object.prevYPos;
+            ballXs[i] = object.xPos;
+            ballYs[i] = object.yPos;
+            ballPrevXs[i] = object.prevXPos;
+            ballPrevYs[i] = object.prevYPos;
+            ballRadii[i] = ball.radius;
+            // Look far enough to cover the whole way the ball came
+            ballReach[i] = ball.radius + object.getTravel();
+            ballMoved[i] = moveX * moveX + moveY * moveY > sweep;
+            // Speeding up and slowing down never take a ball past its
+            // maximum speed in either direction, and bouncing keeps its speed
+            double speed = Math.sqrt(object.xSpeed * object.xSpeed + object.ySpeed * object.ySpeed);
+            ballBound[i] = Math.max(speed, Math.sqrt(2) * object.maxSpeed) * timestep;
+            bound = Math.max(bound, ballBound[i]);
+            ballAsleep[i] = sleeping && (ball.sleepUntil > steps);
+            if (!ballAsleep[i]) {
+                awake++;
+            }
+        }
+        // Sleeping balls only made sure nothing faster than the fastest ball
+        // back then could reach them
+        speedBound = bound;
+        if (speedBound > lastSpeedBound) {
+            for (int i = 0; i < size; i++) {
+                if (ballAsleep[i]) {
+                    ballAsleep[i] = false;
+                    ((ExpandableBall) objects.get(i)).sleepUntil = 0;
+                    awake++;
+                }
+            }
+        }
+        lastSpeedBound = speedBound;
+        collisionGrid.build(ballXs, ballYs, ballReach, size, width, height);
+    }
+
+    /**
+     * Same as checking every ball against every other ball, but only the balls
+     * in nearby grid cells are looked at, and sleeping balls don't look at
+     * all. The pairs are found in the same order as the brute force version.
+     * Nothing but whether balls are asleep is changed, so different ranges
+     * of balls can be looked at on different threads, each with its own
+     * <code>candidates</code> and <code>into</code>.
+     *
+     * If a ball touched a sleeping ball, the sleeping ball is woken up and
+     * the pairs found are wrong; <code>checkWokeSleepers()</code> says so, and
+     * they have to be found again.
+     *
+     * @param from index of the first ball to check
+     * @param to index after the last ball to check
+     * @param collisionGrid built by <code>prepareContacts()</code>
+     * @param candidates to hold the results of grid queries
+     * @param into to add the pairs to
+     */
+    void findContacts(int from, int to, CollisionGrid collisionGrid, CollisionGrid.Candidates candidates,
+            ContactBuffer into) {
+        for (int i = from; i < to; i++) {
+            if (Double.isNaN(ballReach[i]) || ballAsleep[i]) {
+                continue;
+            }
+            double x = ballXs[i];
+            double y = ballYs[i];
+            double radius = ballRadii[i];
+            int found = collisionGrid.query(x, y, ballReach[i], candidates);
+            int[] indices = candidates.getFound();
+            for (int k = 0; k < found; k++) {
+                int j = indices[k];
+                if (j == i) {
+                    continue;
+                }
+                // Where they are now, then along the way they came if either
+                // moved far enough for that to matter
+                if (Ball.isTouching(x, y, radius, ballXs[j], ballYs[j], ballRadii[j])
+                        || ((ballMoved[i] || ballMoved[j]) && Ball.touchedAlongPath(x, y, ballPrevXs[i],
+                                ballPrevYs[i], radius, ballXs[j], ballYs[j], ballPrevXs[j], ballPrevYs[j],
+                                ballRadii[j]))) {
+                    into.add(i, j);
+                    if (ballAsleep[j]) {
+                        ballAsleep[j] = false;
+                        ((ExpandableBall) objects.get(j)).sleepUntil = 0;
+                        wokeSleepers = true;
+                    }
+                }
+            }
+            ExpandableBall ball = (ExpandableBall) objects.get(i);
+            if (sleeping && (steps >= ball.nextSleepCheck)) {
+                trySleep(i, ball, collisionGrid, candidates);
+            }
+        }
+    }
+
+    /**
+     * Puts a ball to sleep for <code>SLEEP_STEPS</code> steps if nothing can
+     * get near it in that time, even heading straight for it at full speed,
+     * and it won't get near a wall going the way it is. Otherwise it waits a
+     * while before trying again. Players' balls and balls too fast to move in
+     * one piece never sleep.
+     */
+    private void trySleep(int i, ExpandableBall ball, CollisionGrid collisionGrid,
+            CollisionGrid.Candidates candidates) {
+        double x = ballXs[i];
+        double y = ballYs[i];
+        double radius = ballRadii[i];
+        double time = SLEEP_STEPS * timestep;
+        if (ball.player || needsSubsteps(ball) || !isClearOfWalls(ball, x, y)
+                || !isClearOfWalls(ball, x + ball.xSpeed * time, y + ball.ySpeed * time)) {
+            ball.nextSleepCheck = steps + SLEEP_CHECK_INTERVAL;
+            return;
+        }
+        // Anything not found is too far away to get here in time
+        double reach = radius + SLEEP_STEPS * (ballBound[i] + speedBound) + SLEEP_MARGIN;
+        int found = collisionGrid.query(x, y, reach, candidates);
+        int[] indices = candidates.getFound();
+        for (int k = 0; k < found; k++) {
+            int j = indices[k];
+            if (j == i) {
+                continue;
+            }
+            double deltaX = x - ballXs[j];
+            double deltaY = y - ballYs[j];
+            double limit = radius + ballRadii[j] + SLEEP_STEPS * (ballBound[i] + ballBound[j]) + SLEEP_MARGIN;
+            if (deltaX * deltaX + deltaY * deltaY <= limit * limit) {
+                ball.nextSleepCheck = steps + SLEEP_CHECK_INTERVAL;
+                return;
+            }
+        }
+        ball.sleepUntil = steps + SLEEP_STEPS;
+        // Stay awake for the step it wakes up in, so that it steers then
+        ball.nextSleepCheck = ball.sleepUntil + 1;
+        ball.sleepX = ball.xPos;
+        ball.sleepY = ball.yPos;
+        ball.sleptAt = steps;
+    }
+
+    /**
+     * @param ball to check
+     * @param x position to check the ball at
+     * @param y position to check the ball at
+     * @return true if the ball would be well inside the walls there, so that
+     *         it can't bounce off any of them (the line between two such
+     *         points is too)
+     */
+    private boolean isClearOfWalls(ExpandableBall ball, double x, double y) {
+        double right = (ball instanceof BouncyBall) ? Math.min(width, maxBouncyX) : width;
+        return (x >= SLEEP_MARGIN) && (x <= right - SLEEP_MARGIN) && (y >= SLEEP_MARGIN)
+                && (y <= height - SLEEP_MARGIN);
+    }
+
+    /**
+     * @return true if a sleeping ball was touched since this was last
+     *         called, so the contacts have to be found again
+     */
+    boolean checkWokeSleepers() {
+        boolean woke = wokeSleepers;
+        wokeSleepers = false;
+        return woke;
+    }
+
+    /**
+     * Applies the rules of the game to every pair of balls that touched, in
+     * order, and tells the listener about each one.
+     *
+     * @param contacts pairs of balls that touched
+     * @return the number of pairs
+     */
+    int resolveContacts(ContactBuffer contacts) {
+        for (int n = 0; n < contacts.size(); n++) {
+            ExpandableBall ball = (ExpandableBall) objects.get(contacts.getBall(n));
+            ExpandableBall otherBall = (ExpandableBall) objects.get(contacts.getOtherBall(n));
+            boolean ballGrew = resolve(ball, otherBall);
+            if (listener != null) {
+                if (ballGrew) {
+                    listener.collision(ball, otherBall);
+                } else {
+                    listener.collision(otherBall, ball);
+                }
+            }
+        }
+        return contacts.size();
+    }
+
+    /**
+     * Applies the rules of the game to two balls that touched: the bigger one
+     * grows and the other one shrinks. A MasterBall shrinks itself away and
+     * leaves whatever it touched at a small size.
+     *
+     * @param ball being checked for collisions
+     * @param otherBall it touched
+     * @return true if ball grew, false if otherBall grew
+     */
+    boolean resolve(ExpandableBall ball, ExpandableBall otherBall) {
+        if (ball instanceof MasterBall) {
+            otherBall.radius = rules.getMasterContactRadius();
+            ball.radius = 0;
+        }
+        // Shrink/grow the appropriate balls
+        double change = rules.getChangeSpeed();
+        if (ball.getRadius() > otherBall.getRadius()) {
+            ball.grow(change);
+            otherBall.shrink(change);
+            return true;
+        } else {
+            ball.shrink(change);
+            otherBall.grow(change);
+            return false;
+        }
+    }
+
+    WorldListener getListener() {
+        return listener;
+    }
+
+    private void wallHit(GeometricObject shape) {
+        if (listener != null) {
+            listener.wallHit(shape);
+        }
+    }
+
+    /**
+     * Populates the list of objects with one user controlled ball, and
+     * subsequent <code>ExpandableBall</code> objects.
+     */
+    public void createObjects() {
+        createObjects(NUM_OBJECTS);
+    }
+
+    /**
+     * Populates the list of objects with one user controlled ball, and
+     * <code>count</code> randomized <code>ExpandableBall</code> objects.
+     *
+     * @param count number of balls besides the user's
+     */
+    public void createObjects(int count) {
+        // Create shapes
+        Log.log(Log.DEBUG, "Creating {} balls", count + 1);
+        for (int i = 0; i < objects.size(); i++) {
+            GeometricObject object = objects.get(i);
+            if (object instanceof ExpandableBall) {
+                pool.release((ExpandableBall) object);
+            }
+        }
+        objects.clear();
+
+        // Create the user's ball
+        userBall = createPlayerBall(width / 2, height / 2);
+        objects.add(userBall);
+
+        // Create other balls
+        addBalls(count);
+        if (listener != null) {
+            listener.restarted();
+        }
+    }
+
+    /**
+     * Adds <code>count</code> randomized <code>ExpandableBall</code> objects
+     * to the game.
+     *
+     * @param count number of balls to add
+     */
+    public void addBalls(int count) {
+        for (int i = 0; i < count; i++) {
+            Ball object = createExpandableBall();
+            objects.add(object);
+        }
+    }
+
+    /**
+     * Adds a ball for another player at a random place. It is just like the
+     * user's ball, but it is up to the caller to steer it (see
+     * <code>GameServer</code>).
+     *
+     * @return the new ball
+     */
+    public ExpandableBall addPlayer() {
+        ExpandableBall ball = createPlayerBall(rand.nextInt(width), rand.nextInt(height));
+        objects.add(ball);
+        return ball;
+    }
+
+    /**
+     * Takes a ball out of the game straight away, such as the ball of a
+     * player who left. Nothing else may use the ball afterwards.
+     *
+     * @param ball to remove
+     */
+    public void removeBall(ExpandableBall ball) {
+        // Not objects.remove(), which would take the first ball that is
+        // equal to this one rather than this one
+        int index = -1;
+        for (int i = 0; i < objects.size(); i++) {
+            if (objects.get(i) == ball) {
+                index = i;
+                break;
+            }
+        }
+        if (index < 0) {
+            return;
+        }
+        objects.remove(index);
+        if (ball == userBall) {
+            userBall = null;
+        }
+        pool.release(ball);
+    }
+
+    private ExpandableBall createPlayerBall(int x, int y) {
+        ExpandableBall ball = pool.obtain(BallType.EXPANDABLE, x, y);
+        ball.setRadius(PLAYER_SIZE);
+        ball.maxSpeed = PLAYER_MAX_SPEED;
+        ball.id = nextId++;
+        ball.player = true;
+        return ball;
+    }
+
+    /**
+     * Creates a randomized <code>ExpandableBall</code> somewhere in the world.
+     * The ball will have a random direction and a random speed. Balls that
+     * were consumed earlier are used again when there are any.
+     *
+     * @return a newly created randomized <code>ExpandableBall</code>.
+     */
+    ExpandableBall createExpandableBall() {
+        // Creating a ball at random location (but not on top of player)
+        int xPos = rand.nextInt(width);
+        int yPos = rand.nextInt(height);
+        while ((userBall != null) && ((Math.abs(xPos - userBall.getX()) < MIN_DISTANCE)
+                || (Math.abs(yPos - userBall.getY()) < MIN_DISTANCE))) {
+            xPos = rand.nextInt(width);
+            yPos = rand.nextInt(height);
+        }
+
+        // Choose a random kind of ball, each as likely as its weight
+        int pick = rand.nextInt(typeMixTotal);
+        int ordinal = 0;
+        while (pick >= typeMix[ordinal]) {
+            pick -= typeMix[ordinal];
+            ordinal++;
+        }
+        BallType type = BallType.get(ordinal);
+        ExpandableBall ball = pool.obtain(type, xPos, yPos);
+        ball.id = nextId++;
+
+        // Random Speed
+        double maxSpeed = rules.getStartingMaxSpeed();
+        double xSpeed = rand.nextFloat() * maxSpeed;
+        double ySpeed = rand.nextFloat() * maxSpeed;
+        ball.setSpeed(xSpeed, ySpeed);
+        ball.maxSpeed = maxSpeed;
+
+        if (ball instanceof BouncyBall) {
+            xSpeed = rand.nextFloat() * STARTING_BOUNCY_MAX_SPEED;
+            ySpeed = rand.nextFloat() * STARTING_BOUNCY_MAX_SPEED;
+
+            ball.setSpeed(xSpeed, ySpeed);
+
+            if (ball.getX() > maxBouncyX) {
+                ball.setPos((width - maxBouncyX), yPos);
+            }
+        }
+
+        // Random direction (gives either a 0 or 1; if 0 - negative direction)
+        if (rand.nextInt(2) == 0)
+            ball.reverseX();
+        if (rand.nextInt(2) == 0)
+            ball.reverseY();
+
+        // Random size
+        float size = rand.nextFloat() * STARTING_MAX_SIZE;
+        ball.setRadius(size);
+
+        return ball;
+    }
+}
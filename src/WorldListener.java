@@ -0,0 +1,38 @@
+package edu.nyu.cs.cs101.consumers;
+
+/**
+ * Receives notifications about things that happen while a <code>World</code>
+ * is being stepped. The world itself knows nothing about sound or the screen,
+ * so anything that wants to react to the game (the <code>Driver</code> playing
+ * sounds, for example) implements this interface.
+ *
+ * @author Katie Kroik
+ */
+public interface WorldListener {
+    /**
+     * Called when a shape bounces off one of the edges of the world.
+     *
+     * @param shape that hit the wall
+     */
+    void wallHit(GeometricObject shape);
+
+    /**
+     * Called after two balls collided and their sizes have been changed.
+     *
+     * @param grower the ball that grew
+     * @param shrinker the ball that shrank
+     */
+    void collision(ExpandableBall grower, ExpandableBall shrinker);
+
+    /**
+     * Called when an object has been consumed and removed from the world.
+     *
+     * @param object that was removed
+     */
+    void consumed(GeometricObject object);
+
+    /**
+     * Called when the world has been filled with a new set of balls.
+     */
+    void restarted();
+}
@@ -0,0 +1,50 @@
+package edu.nyu.cs.cs101.consumers;
+
+import java.util.ArrayList;
+
+/**
+ * Passes everything that happens in a world on to several listeners, in the
+ * order they were added. A world only has one listener, so give it one of
+ * these when more than one thing wants to know (for example the
+ * <code>Driver</code> playing sounds and an <code>EventLog</code>).
+ *
+ * @author Katie Kroik
+ */
+class WorldListeners implements WorldListener {
+    private final ArrayList<WorldListener> listeners = new ArrayList<WorldListener>();
+
+    /**
+     * @param listener to pass everything on to
+     */
+    void add(WorldListener listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void wallHit(GeometricObject shape) {
+        for (int i = 0; i < listeners.size(); i++) {
+            listeners.get(i).wallHit(shape);
+        }
+    }
+
+    @Override
+    public void collision(ExpandableBall grower, ExpandableBall shrinker) {
+        for (int i = 0; i < listeners.size(); i++) {
+            listeners.get(i).collision(grower, shrinker);
+        }
+    }
+
+    @Override
+    public void consumed(GeometricObject object) {
+        for (int i = 0; i < listeners.size(); i++) {
+            listeners.get(i).consumed(object);
+        }
+    }
+
+    @Override
+    public void restarted() {
+        for (int i = 0; i < listeners.size(); i++) {
+            listeners.get(i).restarted();
+        }
+    }
+}